@@ -0,0 +1,56 @@
+package bench;
+
+import geometry.Coordinate;
+import geometry.EllShape;
+import geometry.Packing;
+import geometry.Tile;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* JMH benchmarks of the greedy packing of an L-shape
+   "width height cornerX cornerY tileWidth tileHeight": building it with
+   EllShape.packGreedily, and only counting its tiles with
+   EllShape.countGreedily. See SolverBenchmark for how to run them. */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GreedyBenchmark {
+
+	@Param({ "17 15 9 7 6 4", "31 27 31 27 2 7", "49 28 20 11 8 3" })
+	public String instance;
+
+	private EllShape ell;
+	private Tile basicTile;
+
+	@Setup
+	public void readInstance() {
+		String[] numbers = instance.split(" ");
+		ell = new EllShape(Integer.parseInt(numbers[0]), Integer.parseInt(numbers[1]),
+				new Coordinate(Integer.parseInt(numbers[2]), Integer.parseInt(numbers[3])));
+		basicTile = new Tile(Integer.parseInt(numbers[4]), Integer.parseInt(numbers[5]));
+	}
+
+	@Benchmark
+	public Packing packGreedily() {
+		return ell.packGreedily(basicTile);
+	}
+
+	@Benchmark
+	public int countGreedily() {
+		return ell.countGreedily(basicTile);
+	}
+}
@@ -0,0 +1,77 @@
+package bench;
+
+import geometry.Coordinate;
+import geometry.EllShape;
+import geometry.Packing;
+import geometry.Part;
+import geometry.Rotation;
+import geometry.Tile;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/* JMH benchmarks of Packing.transform and Packing.concat on packings of
+   a given number of tiles. Since transform and concat only build a
+   composed packing, the cost of their tiles is paid when the result is
+   iterated: the *AndIterate benchmarks include it. See SolverBenchmark for
+   how to run them. */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackingBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int tiles;
+
+	private Packing pack1;
+	private Packing pack2;
+	private Part part;
+
+	@Setup
+	public void buildPackings() {
+		pack1 = new Packing();
+		pack2 = new Packing();
+		for (int i = 0; i < tiles; i++) {
+			pack1.addTile(new Tile(2, 3, 2 * i, 0));
+			pack2.addTile(new Tile(3, 2, 3 * i, 3));
+		}
+		part = new Part(new EllShape(3 * tiles, 5, new Coordinate(3 * tiles, 5)), new Coordinate(7, 11),
+				Rotation.QUARTER);
+	}
+
+	@Benchmark
+	public Packing transform() {
+		return pack1.transform(part);
+	}
+
+	@Benchmark
+	public Packing concat() {
+		return Packing.concat(pack1, pack2);
+	}
+
+	@Benchmark
+	public void transformAndIterate(Blackhole blackhole) {
+		for (Tile tile : pack1.transform(part))
+			blackhole.consume(tile);
+	}
+
+	@Benchmark
+	public void concatAndIterate(Blackhole blackhole) {
+		for (Tile tile : Packing.concat(pack1.transform(part), pack2))
+			blackhole.consume(tile);
+	}
+}
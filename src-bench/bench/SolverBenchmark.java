@@ -0,0 +1,99 @@
+package bench;
+
+import dynamicProg.BoundedDynamicProgrammingSolver;
+import dynamicProg.DenseDynamicProgrammingSolver;
+import dynamicProg.DynamicProgrammingSolver;
+import geometry.Coordinate;
+import geometry.EllShape;
+import geometry.Packing;
+import geometry.Tile;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* JMH benchmarks of the solvers, one per line of resources/instances.
+
+   The benchmarks of src-bench are a source folder of their own, so that
+   the project keeps building without JMH. To run them, with the JMH jars
+   (jmh-core, jmh-generator-annprocess, jopt-simple, commons-math3) in
+   $JMH:
+
+     javac -encoding ISO-8859-1 -d bin $(find src -name '*.java')
+     javac -cp bin:$JMH/* -d bin-bench src-bench/bench/*.java
+     java -cp bin:bin-bench:$JMH/* org.openjdk.jmh.Main -prof gc
+
+   from the root of the project (resources/instances is read from the
+   working directory, or from the system property instances). -prof gc
+   reports the allocation rate (gc.alloc.rate.norm is the number of bytes
+   allocated per operation). A subset is selected by a regular expression
+   on the benchmark names, and parameters are overridden with -p, e.g.
+   "bench.SolverBenchmark -p solver=dense -p line=6".
+
+   Each operation solves an instance from scratch, with a fresh memo: the
+   time is measured on single shots, since the larger instances take
+   seconds. The solution is checked against the first run, so that a
+   benchmark never measures a wrong solver. */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+public class SolverBenchmark {
+
+	@Param({ "0", "1", "2", "3", "4", "5", "6", "7" })
+	public int line;
+
+	@Param({ "sequential", "bounded", "dense" })
+	public String solver;
+
+	private EllShape ground;
+	private Tile basicTile;
+	private int expected = -1;
+
+	@Setup
+	public void readInstance() throws IOException {
+		List<String> lines = Files.readAllLines(Paths.get(System.getProperty("instances", "resources/instances")));
+		String[] numbers = lines.get(line).trim().split("\\s+");
+		int width = Integer.parseInt(numbers[0]);
+		int height = Integer.parseInt(numbers[1]);
+		ground = new EllShape(width, height, new Coordinate(width, height));
+		basicTile = new Tile(Integer.parseInt(numbers[2]), Integer.parseInt(numbers[3]));
+	}
+
+	private DynamicProgrammingSolver newSolver() {
+		switch (solver) {
+		case "sequential":
+			return new DynamicProgrammingSolver(ground, basicTile);
+		case "bounded":
+			return new BoundedDynamicProgrammingSolver(ground, basicTile);
+		case "dense":
+			return new DenseDynamicProgrammingSolver(ground, basicTile);
+		}
+		throw new IllegalArgumentException("unknown solver: " + solver);
+	}
+
+	@Benchmark
+	public Packing solve() {
+		Packing pack = newSolver().retrieveOptimalSolution(ground);
+		if (expected < 0)
+			expected = pack.size();
+		else if (pack.size() != expected)
+			throw new IllegalStateException("solver " + solver + " found " + pack.size() + " tiles, not " + expected);
+		return pack;
+	}
+}
@@ -0,0 +1,57 @@
+package bench;
+
+import geometry.Coordinate;
+import geometry.EllShape;
+import geometry.Subdivision;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/* JMH benchmarks of the enumeration of the subdivisions of an L-shape
+   "width height cornerX cornerY": the stream EllShape.subdivisions(), and
+   the visitor EllShape.forEachSubdivision. See SolverBenchmark for how to
+   run them. */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubdivisionBenchmark {
+
+	@Param({ "20 20 20 20", "30 25 12 9", "49 28 49 28" })
+	public String shape;
+
+	private EllShape ell;
+
+	@Setup
+	public void readShape() {
+		String[] numbers = shape.split(" ");
+		ell = new EllShape(Integer.parseInt(numbers[0]), Integer.parseInt(numbers[1]),
+				new Coordinate(Integer.parseInt(numbers[2]), Integer.parseInt(numbers[3])));
+	}
+
+	@Benchmark
+	public void stream(Blackhole blackhole) {
+		ell.subdivisions().forEach((Subdivision sub) -> blackhole.consume(sub));
+	}
+
+	@Benchmark
+	public void visitor(Blackhole blackhole) {
+		ell.forEachSubdivision(sub -> {
+			blackhole.consume(sub.width1 + sub.width2);
+			return true;
+		});
+	}
+}
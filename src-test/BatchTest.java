@@ -0,0 +1,155 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import batch.BatchSolver;
+import batch.Instance;
+import batch.InstancePipeline;
+import batch.InstanceResult;
+import batch.InstanceReader;
+import batch.ResultWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+/* Tests the batch mode: reading instances, solving them in parallel, and
+   writing one record per instance in the order of the input, or not, when
+   streaming them. */
+
+public class BatchTest {
+
+	private static final String INSTANCES = "7 7 2 1\n8 5 3 1\n10 9\n4 3\n13 13 5 2\n";
+
+	@Test
+	public void testRead() throws IOException {
+		List<Instance> instances = Instance.readAll(new StringReader(INSTANCES));
+		assertEquals(4, instances.size());
+		assertEquals("10 9 4 3", instances.get(2).toString());
+		assertEquals(3, instances.get(3).index);
+		try {
+			Instance.readAll(new StringReader("7 7 2"));
+			assertTrue(false);
+		} catch (IOException exc) {
+		}
+	}
+
+	@Test
+	public void testJson() throws IOException, InterruptedException {
+		StringWriter out = new StringWriter();
+		try (ResultWriter writer = ResultWriter.of("json", out, true)) {
+			new BatchSolver("auto", 3, null).solveAll(Instance.readAll(new StringReader(INSTANCES)), writer);
+		}
+		String[] lines = out.toString().split("\n");
+		assertEquals(4, lines.length);
+		int[] tiles = { 24, 13, 7, 16 };
+		for (int i = 0; i < lines.length; i++) {
+			assertTrue(lines[i].startsWith("{\"index\":" + i + ","));
+			assertTrue(lines[i].contains("\"tiles\":" + tiles[i] + ","));
+			assertTrue(lines[i].contains("\"optimal\":true"));
+			assertTrue(lines[i].endsWith("]}"));
+		}
+	}
+
+	@Test
+	public void testCsv() throws IOException, InterruptedException {
+		StringWriter out = new StringWriter();
+		try (ResultWriter writer = ResultWriter.of("csv", out, false)) {
+			new BatchSolver("bounded", 2, null).solveAll(Instance.readAll(new StringReader(INSTANCES)), writer);
+		}
+		String[] lines = out.toString().split("\n");
+		assertEquals(5, lines.length);
+		assertTrue(lines[0].startsWith("index,width,height,tileWidth,tileHeight,tiles,"));
+		assertTrue(lines[3].startsWith("2,10,9,4,3,7,7,true,0,true,"));
+	}
+
+	private static InstanceReader reader(String text) {
+		return new InstanceReader(Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII))));
+	}
+
+	@Test
+	public void testStreamReader() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 20000; i++)
+			text.append(i % 50 + 1).append(i % 2 == 0 ? "\t" : "   ").append(7).append(" 2\r\n").append(3).append(' ');
+		InstanceReader reader = reader(text.toString());
+		for (int i = 0; i < 20000; i++) {
+			Instance instance = reader.next();
+			assertEquals(i, instance.index);
+			assertEquals((i % 50 + 1) + " 7 2 3", instance.toString());
+		}
+		assertEquals(null, reader.next());
+		for (String bad : new String[] { "7 7 2", "7 7 2 x", "7 7 2 1-", "7 0 2 1" }) {
+			try {
+				reader(bad).next();
+				assertTrue(false);
+			} catch (IOException exc) {
+			}
+		}
+	}
+
+	@Test
+	public void testPipeline() throws IOException, InterruptedException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 300; i++)
+			text.append(5 + i % 7).append(' ').append(4 + i % 5).append(" 2 3\n");
+		for (boolean ordered : new boolean[] { true, false }) {
+			StringWriter out = new StringWriter();
+			try (ResultWriter writer = ResultWriter.of("csv", out, false)) {
+				int count = new InstancePipeline(new BatchSolver("auto", 3, null), 5, ordered)
+						.run(reader(text.toString()), writer);
+				assertEquals(300, count);
+			}
+			String[] lines = out.toString().split("\n");
+			assertEquals(301, lines.length);
+			Set<Integer> indices = new HashSet<Integer>();
+			for (int i = 1; i < lines.length; i++) {
+				int index = Integer.parseInt(lines[i].substring(0, lines[i].indexOf(',')));
+				assertTrue(indices.add(index));
+				if (ordered)
+					assertEquals(i - 1, index);
+			}
+		}
+	}
+
+	@Test
+	public void testPipelineInterrupted() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		ResultWriter blocked = new ResultWriter(new StringWriter(), false) {
+			@Override
+			public void write(InstanceResult result) throws IOException {
+				try {
+					release.await();
+				} catch (InterruptedException exc) {
+					throw new InterruptedIOException();
+				}
+			}
+		};
+		Throwable[] thrown = { null };
+		Thread parser = new Thread(() -> {
+			try {
+				new InstancePipeline(new BatchSolver("bounded", 1, null), 1, true).run(reader(INSTANCES), blocked);
+			} catch (Throwable exc) {
+				thrown[0] = exc;
+			}
+		});
+		parser.start();
+		// The parser waits for a permit while the writer is blocked.
+		while (parser.getState() != Thread.State.WAITING)
+			Thread.sleep(10);
+		parser.interrupt();
+		release.countDown();
+		parser.join();
+		assertTrue(thrown[0] instanceof InterruptedException);
+		for (Thread thread : Thread.getAllStackTraces().keySet())
+			assertFalse(thread.getName().equals("batch-writer"));
+	}
+}
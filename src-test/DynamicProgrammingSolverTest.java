@@ -0,0 +1,490 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import dynamicProg.AnswerTable;
+import dynamicProg.AnytimeResult;
+import dynamicProg.BoundedDynamicProgrammingSolver;
+import dynamicProg.Cancellation;
+import dynamicProg.DenseDynamicProgrammingSolver;
+import dynamicProg.DynamicProgrammingSolver;
+import dynamicProg.MemoStore;
+import dynamicProg.MemoTable;
+import dynamicProg.SolverCache;
+import dynamicProg.SolverMetrics;
+import dynamicProg.SpillingMemoTable;
+import dynamicProg.ParallelDynamicProgrammingSolver;
+import geometry.BlockHeuristic;
+import geometry.Coordinate;
+import geometry.EllShape;
+import geometry.Packing;
+import geometry.Tile;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+/* Tests the solvers on small instances.
+   - known optimal values for the sequential solver
+   - the other solving modes agree with the sequential solver
+   - returned packings fit into the ground and are disjoint
+   - anytime solves report improving packings, and resume after a stop
+   - a memo table with a small memory budget gives the same packings
+   - answer tables agree with the solvers, and survive their export
+   - a retargeted solver only computes the new shapes
+   - the solvers leave Flight Recorder alone unless a recording runs
+ */
+
+public class DynamicProgrammingSolverTest {
+
+	private static final int[][] instances = {
+		{ 7, 7, 2, 1, 24 },
+		{ 8, 5, 3, 1, 13 },
+		{ 10, 9, 4, 3, 7 },
+		{ 13, 13, 5, 2, 16 },
+		{ 21, 13, 5, 2, 27 },
+	};
+
+	private static EllShape ground(int[] instance) {
+		return new EllShape(instance[0], instance[1], new Coordinate(instance[0], instance[1]));
+	}
+
+	private static Tile tile(int[] instance) {
+		return new Tile(instance[2], instance[3]);
+	}
+
+	public static void checkPacking(EllShape ground, Packing pack) {
+		boolean[][] used = new boolean[ground.width][ground.height];
+		for (Tile tile : pack) {
+			for (int i = tile.getCornerX(); i < tile.getCornerX() + tile.getWidth(); i++) {
+				for (int j = tile.getCornerY(); j < tile.getCornerY() + tile.getHeight(); j++) {
+					assertTrue("tile inside the ground (" + i + ", " + j + ")",
+							ground.contains(new Coordinate(i + 1, j + 1)));
+					assertTrue("tiles are disjoint (" + i + ", " + j + ")", !used[i][j]);
+					used[i][j] = true;
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSequential() {
+		for (int[] instance : instances) {
+			Packing pack = new DynamicProgrammingSolver(ground(instance), tile(instance)).solve();
+			assertEquals(instance[4], pack.size());
+			checkPacking(ground(instance), pack);
+		}
+	}
+
+	@Test
+	public void testParallel() throws IOException {
+		for (int[] instance : instances) {
+			try (ParallelDynamicProgrammingSolver solver = new ParallelDynamicProgrammingSolver(ground(instance),
+					tile(instance), 4)) {
+				Packing pack = solver.solve();
+				assertEquals(instance[4], pack.size());
+				checkPacking(ground(instance), pack);
+			}
+		}
+		// Solvers on a shared pool leave it running.
+		ForkJoinPool pool = new ForkJoinPool(2);
+		for (int[] instance : instances)
+			try (ParallelDynamicProgrammingSolver solver = new ParallelDynamicProgrammingSolver(ground(instance),
+					tile(instance), pool)) {
+				assertEquals(instance[4], solver.solve().size());
+			}
+		assertFalse(pool.isShutdown());
+		// The packings go into the table given, where a sequential solver
+		// finds them, even when it spills them.
+		int[] large = instances[4];
+		MemoTable table = new MemoTable(tile(large));
+		try (ParallelDynamicProgrammingSolver solver = new ParallelDynamicProgrammingSolver(ground(large),
+				tile(large), table, pool)) {
+			assertEquals(large[4], solver.solve().size());
+		}
+		SolverMetrics metrics = new SolverMetrics();
+		DynamicProgrammingSolver sequential = new DynamicProgrammingSolver(ground(large), tile(large), table);
+		sequential.setMetrics(metrics);
+		assertEquals(large[4], sequential.solve().size());
+		assertEquals(0, metrics.states());
+		try (SpillingMemoTable spilling = new SpillingMemoTable(tile(large), 0);
+				ParallelDynamicProgrammingSolver solver = new ParallelDynamicProgrammingSolver(ground(large),
+						tile(large), spilling, pool)) {
+			Packing pack = solver.solve();
+			assertEquals(large[4], pack.size());
+			checkPacking(ground(large), pack);
+			assertTrue(spilling.size() > 0 && spilling.residentShapes() == 0);
+		}
+		pool.shutdown();
+	}
+
+	// A ground whose sides do not fit into a key (see EllShape.key) is solved
+	// as well: 10x9 with a 4x3 tile, at scale 4000.
+	@Test
+	public void testLargeGround() {
+		int scale = 4000;
+		EllShape ground = new EllShape(10 * scale, 9 * scale, new Coordinate(10 * scale, 9 * scale));
+		Tile tile = new Tile(4 * scale, 3 * scale);
+		assertFalse(DenseDynamicProgrammingSolver.fits(ground, tile, Long.MAX_VALUE));
+		for (DynamicProgrammingSolver solver : new DynamicProgrammingSolver[] {
+				new DynamicProgrammingSolver(ground, tile), new BoundedDynamicProgrammingSolver(ground, tile) }) {
+			Packing pack = solver.retrieveOptimalSolution(ground);
+			assertEquals(7, pack.size());
+			Packing unscaled = new Packing();
+			for (Tile placed : pack) {
+				assertTrue(placed.getCornerX() % scale == 0 && placed.getCornerY() % scale == 0);
+				unscaled.addTile(placed.getWidth() / scale, placed.getHeight() / scale, placed.getCornerX() / scale,
+						placed.getCornerY() / scale);
+			}
+			checkPacking(new EllShape(10, 9, new Coordinate(10, 9)), unscaled);
+		}
+	}
+
+	@Test
+	public void testBounded() {
+		for (int[] instance : instances) {
+			Packing pack = new BoundedDynamicProgrammingSolver(ground(instance), tile(instance)).solve();
+			assertEquals(instance[4], pack.size());
+			checkPacking(ground(instance), pack);
+		}
+	}
+
+	@Test
+	public void testBlockHeuristic() {
+		for (int[] instance : instances) {
+			DynamicProgrammingSolver solver = new DynamicProgrammingSolver(ground(instance), tile(instance));
+			solver.setInitialHeuristic(new BlockHeuristic(tile(instance)));
+			Packing pack = solver.solve();
+			assertEquals(instance[4], pack.size());
+			checkPacking(ground(instance), pack);
+		}
+		for (Tile tile : new Tile[] { new Tile(2, 3), new Tile(5, 3) }) {
+			BlockHeuristic heuristic = new BlockHeuristic(tile, 64);
+			for (int w = 1; w <= 14; w++)
+				for (int h = 1; h <= 14; h++)
+					for (int x = 1; x <= w; x++)
+						for (int y = 1; y <= h; y++) {
+							EllShape ell = new EllShape(w, h, new Coordinate(x, y));
+							Packing pack = heuristic.pack(ell);
+							assertEquals(heuristic.count(ell), pack.size());
+							assertTrue(pack.size() >= ell.countGreedily(tile));
+							assertTrue(pack.size() <= ell.getBestPackingUpperBound(tile));
+							checkPacking(ell, pack);
+						}
+		}
+	}
+
+	@Test
+	public void testAnytime() {
+		for (int[] instance : instances) {
+			List<Integer> sizes = new ArrayList<Integer>();
+			AnytimeResult result = new DynamicProgrammingSolver(ground(instance), tile(instance))
+					.solve(null, null, improved -> sizes.add(improved.packing.size()));
+			assertTrue(result.isComplete && result.isOptimal());
+			assertEquals(instance[4], result.packing.size());
+			assertEquals(instance[4], (int) sizes.get(sizes.size() - 1));
+			for (int i = 1; i < sizes.size(); i++)
+				assertTrue(sizes.get(i - 1) < sizes.get(i));
+		}
+		int[] instance = instances[instances.length - 1];
+		ParallelDynamicProgrammingSolver parallel = new ParallelDynamicProgrammingSolver(ground(instance),
+				tile(instance), 4);
+		DynamicProgrammingSolver[] solvers = { new DynamicProgrammingSolver(ground(instance), tile(instance)),
+				new BoundedDynamicProgrammingSolver(ground(instance), tile(instance)), parallel,
+				new DenseDynamicProgrammingSolver(ground(instance), tile(instance)) };
+		for (DynamicProgrammingSolver solver : solvers) {
+			Cancellation cancellation = new Cancellation();
+			cancellation.cancel();
+			AnytimeResult stopped = solver.solve(null, cancellation, null);
+			assertTrue(!stopped.isComplete);
+			assertTrue(stopped.packing.size() <= instance[4]);
+			assertEquals(stopped.upperBound - stopped.packing.size(), stopped.gap());
+			checkPacking(ground(instance), stopped.packing);
+			// Nothing inexact was memoised: the search goes on to the optimum.
+			AnytimeResult complete = solver.solve(Instant.now().plusSeconds(600), null, null);
+			assertTrue(complete.isComplete);
+			assertEquals(instance[4], complete.packing.size());
+			checkPacking(ground(instance), complete.packing);
+			// A deadline too far for nanoseconds is no deadline.
+			assertTrue(solver.solve(Instant.MAX, null, null).isComplete);
+		}
+		parallel.close();
+	}
+
+	private static void checkMetrics(SolverMetrics metrics) {
+		long states = 0;
+		for (int i = 0; i < SolverMetrics.BUCKETS; i++)
+			states += metrics.statesInBucket(i);
+		assertEquals(metrics.states(), states);
+		assertEquals(metrics.memoMisses(), metrics.states());
+		assertTrue(metrics.subdivisionsAccepted() <= metrics.subdivisionsEnumerated());
+		assertTrue(metrics.earlyExits() <= metrics.states() && metrics.initialWins() <= metrics.states());
+	}
+
+	@Test
+	public void testMetrics() {
+		int[] instance = instances[instances.length - 1];
+		ParallelDynamicProgrammingSolver parallel = new ParallelDynamicProgrammingSolver(ground(instance),
+				tile(instance), 4);
+		DynamicProgrammingSolver[] solvers = { new DynamicProgrammingSolver(ground(instance), tile(instance)), parallel,
+				new DenseDynamicProgrammingSolver(ground(instance), tile(instance)) };
+		for (DynamicProgrammingSolver solver : solvers) {
+			SolverMetrics metrics = new SolverMetrics();
+			solver.setMetrics(metrics);
+			assertEquals(instance[4], solver.solve().size());
+			checkMetrics(metrics);
+			assertTrue(metrics.states() > 0 && metrics.subdivisionsAccepted() > 0 && metrics.initialWins() > 0);
+		}
+		// A second solve only hits the memo.
+		SolverMetrics metrics = new SolverMetrics();
+		solvers[0].setMetrics(metrics);
+		solvers[0].solve();
+		assertEquals(1, metrics.memoHits());
+		assertEquals(0, metrics.states());
+		parallel.close();
+	}
+
+	@Test
+	public void testDense() {
+		for (int[] instance : instances) {
+			Packing pack = new DenseDynamicProgrammingSolver(ground(instance), tile(instance)).solve();
+			assertEquals(instance[4], pack.size());
+			checkPacking(ground(instance), pack);
+		}
+	}
+
+	@Test
+	public void testDenseEllGround() {
+		EllShape ground = new EllShape(12, 10, new Coordinate(7, 4));
+		Tile tile = new Tile(3, 2);
+		Packing expected = new DynamicProgrammingSolver(ground, tile).solve();
+		Packing pack = new DenseDynamicProgrammingSolver(ground, tile).solve();
+		assertEquals(expected.size(), pack.size());
+		checkPacking(ground, pack);
+	}
+
+	@Test
+	public void testDenseFootprint() {
+		Tile tile = new Tile(7, 5);
+		EllShape elongated = new EllShape(120, 40, new Coordinate(120, 40));
+		EllShape square = new EllShape(120, 120, new Coordinate(120, 120));
+		long footprint = DenseDynamicProgrammingSolver.footprint(elongated, tile);
+		assertTrue(footprint < DenseDynamicProgrammingSolver.footprint(square, tile) / 10);
+		assertTrue(DenseDynamicProgrammingSolver.fits(elongated, tile, footprint));
+		assertFalse(DenseDynamicProgrammingSolver.fits(elongated, tile, footprint - 1));
+		assertFalse(DenseDynamicProgrammingSolver.fits(new EllShape(5000, 5000, new Coordinate(5000, 5000)), tile,
+				Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testDenseWithMemoStore() throws IOException {
+		Path directory = Files.createTempDirectory("memo");
+		try {
+			int[] small = instances[3], large = instances[4];
+			try (MemoStore store = MemoStore.open(directory, tile(small), 13)) {
+				Packing pack = new DenseDynamicProgrammingSolver(ground(small), tile(small), store).solve();
+				assertEquals(small[4], pack.size());
+			}
+			try (MemoStore store = MemoStore.open(directory, new Tile(small[3], small[2]), 13)) {
+				assertEquals(small[4], store.value(store.slot(13, 13, 13, 13)));
+				Packing pack = new DenseDynamicProgrammingSolver(ground(small), tile(small), store).solve();
+				assertEquals(small[4], pack.size());
+				checkPacking(ground(small), pack);
+			}
+			try (MemoStore store = MemoStore.open(directory, tile(large), 21)) {
+				assertEquals(21, store.max);
+				assertEquals(small[4], store.value(store.slot(13, 13, 13, 13)));
+				Packing pack = new DenseDynamicProgrammingSolver(ground(large), tile(large), store).solve();
+				assertEquals(large[4], pack.size());
+				checkPacking(ground(large), pack);
+			}
+		} finally {
+			for (Path file : Files.list(directory).toArray(Path[]::new))
+				Files.delete(file);
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testSolverCache() {
+		SolverCache cache = new SolverCache();
+		int[] small = instances[3], large = instances[4];
+		assertEquals(small[4], cache.solve(ground(small), tile(small)).size());
+		assertEquals(large[4], cache.solve(ground(large), new Tile(large[3], large[2])).size());
+		assertTrue(cache.tableFor(tile(small)) == cache.tableFor(new Tile(small[3], small[2])));
+		Packing pack = cache.solve(ground(large), tile(large));
+		assertTrue(pack == cache.solve(ground(large), tile(large)));
+		EllShape transposed = new EllShape(large[1], large[0], new Coordinate(large[1], large[0]));
+		pack = cache.solve(transposed, tile(large));
+		assertEquals(large[4], pack.size());
+		checkPacking(transposed, pack);
+	}
+
+	// The weight of a flat packing is close to the heap it takes.
+	@Test
+	public void testSpillingFootprint() throws IOException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		Tile tile = new Tile(1, 1);
+		EllShape ground = new EllShape(1000, 1000, new Coordinate(1000, 1000));
+		long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		Packing pack = new Packing(100000);
+		for (int i = 0; i < 100000; i++)
+			pack.addTile(1, 1, i % 1000, i / 1000);
+		long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+		try (SpillingMemoTable table = new SpillingMemoTable(tile, Long.MAX_VALUE)) {
+			table.put(ground, pack);
+			assertTrue(Math.abs(table.residentBytes() - allocated) < allocated / 10);
+		}
+	}
+
+	@Test
+	public void testSpillingMemoTable() throws IOException {
+		Path directory = Files.createTempDirectory("spill");
+		try {
+			for (int[] instance : instances) {
+				try (SpillingMemoTable table = new SpillingMemoTable(tile(instance), 4096, directory)) {
+					Packing pack = new DynamicProgrammingSolver(ground(instance), tile(instance), table).solve();
+					assertEquals(instance[4], pack.size());
+					checkPacking(ground(instance), pack);
+					assertTrue(table.residentBytes() <= 4096);
+				}
+			}
+			int[] large = instances[4];
+			// The heuristic packings are spilled, the greedy ones built again.
+			try (SpillingMemoTable table = new SpillingMemoTable(tile(large), 4096, directory)) {
+				DynamicProgrammingSolver solver = new DynamicProgrammingSolver(ground(large), tile(large), table);
+				solver.setInitialHeuristic(new BlockHeuristic(tile(large)));
+				Packing pack = solver.solve();
+				assertTrue(table.evictions() > 0 && table.spills() > 0);
+				checkPacking(ground(large), pack);
+				checkPacking(ground(large), pack);
+				assertTrue(table.reloads() > 0);
+			}
+			// Without spill file, the evicted packings are computed again.
+			try (SpillingMemoTable table = new SpillingMemoTable(tile(large), 0)) {
+				Packing pack = new DynamicProgrammingSolver(ground(large), tile(large), table).solve();
+				assertEquals(large[4], pack.size());
+				checkPacking(ground(large), pack);
+				assertTrue(table.recomputations() > 0 && table.spills() == 0);
+				// Nor are the greedy packings kept.
+				assertEquals(0, table.residentShapes());
+			}
+			assertEquals(0, Files.list(directory).count());
+		} finally {
+			for (Path file : Files.list(directory).toArray(Path[]::new))
+				Files.delete(file);
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testAnswerTable() throws IOException {
+		Tile tile = new Tile(2, 5);
+		AnswerTable dense = AnswerTable.compute(tile, 14, 11);
+		AnswerTable topDown = AnswerTable.compute(tile, 14, 11, new MemoTable(tile));
+		StringWriter out = new StringWriter();
+		dense.write(out);
+		AnswerTable read = AnswerTable.read(new StringReader(out.toString()));
+		for (int width = 0; width <= 14; width++)
+			for (int height = 0; height <= 11; height++) {
+				assertEquals(dense.count(width, height), topDown.count(width, height));
+				assertEquals(dense.count(width, height), read.count(width, height));
+				if (width > 0)
+					assertTrue(dense.count(width - 1, height) <= dense.count(width, height));
+			}
+		for (int[] size : new int[][] { { 14, 11 }, { 13, 7 }, { 9, 11 } }) {
+			EllShape ground = new EllShape(size[0], size[1], new Coordinate(size[0], size[1]));
+			assertEquals(new DynamicProgrammingSolver(ground, tile).solve().size(), dense.count(size[0], size[1]));
+		}
+		int[] breakpoints = dense.breakpoints(5);
+		assertEquals(2, breakpoints[0]);
+		assertEquals(1, breakpoints[1]);
+	}
+
+	@Test
+	public void testRetarget() {
+		Tile tile = new Tile(5, 2);
+		EllShape[] grounds = { new EllShape(13, 13, new Coordinate(13, 13)), new EllShape(13, 14, new Coordinate(13, 14)),
+				new EllShape(14, 14, new Coordinate(14, 14)), new EllShape(9, 11, new Coordinate(9, 11)) };
+		DynamicProgrammingSolver[] solvers = { new DynamicProgrammingSolver(grounds[0], tile),
+				new DenseDynamicProgrammingSolver(grounds[0], tile) };
+		for (DynamicProgrammingSolver solver : solvers) {
+			SolverMetrics metrics = new SolverMetrics();
+			solver.setMetrics(metrics);
+			for (EllShape ground : grounds) {
+				if (ground != grounds[0])
+					solver.retarget(ground);
+				assertTrue(solver.getGround() == ground);
+				metrics.reset();
+				Packing pack = solver.solve();
+				checkPacking(ground, pack);
+				DynamicProgrammingSolver fresh = (solver instanceof DenseDynamicProgrammingSolver)
+						? new DenseDynamicProgrammingSolver(ground, tile) : new DynamicProgrammingSolver(ground, tile);
+				SolverMetrics freshMetrics = new SolverMetrics();
+				fresh.setMetrics(freshMetrics);
+				assertEquals(fresh.solve().size(), pack.size());
+				if (ground != grounds[0])
+					assertTrue(metrics.states() < freshMetrics.states());
+			}
+		}
+	}
+
+	// Solves a small ground with the sequential and the dense solvers, for
+	// testNoFlightRecorder in a fresh JVM.
+	public static void main(String[] args) {
+		int[] instance = instances[0];
+		new DynamicProgrammingSolver(ground(instance), tile(instance)).solve();
+		new DenseDynamicProgrammingSolver(ground(instance), tile(instance)).solve();
+	}
+
+	@Test
+	public void testNoFlightRecorder() throws IOException, InterruptedException {
+		String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+		Process process = new ProcessBuilder(java, "-verbose:class", "-cp", System.getProperty("java.class.path"),
+				DynamicProgrammingSolverTest.class.getName()).redirectErrorStream(true).start();
+		boolean solved = false, loaded = false;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				solved |= line.startsWith("Runtime : ");
+				loaded |= line.contains("jdk.jfr.internal.");
+			}
+		}
+		assertEquals(0, process.waitFor());
+		assertTrue(solved);
+		assertFalse(loaded);
+	}
+
+	@Test
+	public void testStateEvents() throws IOException {
+		Path file = Files.createTempFile("states", ".jfr");
+		int[] instance = instances[instances.length - 1];
+		try (Recording recording = new Recording()) {
+			recording.enable("dynamicProg.State").withThreshold(Duration.ZERO);
+			recording.start();
+			new DynamicProgrammingSolver(ground(instance), tile(instance)).solve();
+			new DenseDynamicProgrammingSolver(ground(instance), tile(instance)).solve();
+			recording.stop();
+			recording.dump(file);
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("dynamicProg.State")
+					&& e.getInt("tileWidth") == instance[2] && e.getInt("tileHeight") == instance[3]));
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -60,6 +60,17 @@ public class EllShapeAndPartTest {
     assertTrue(ell.getPackingUpperBound(new Tile(1,5)) == 10);
   }
 
+  @Test
+  public void testBestUpperBound() {
+    EllShape ell = new EllShape(7,9,new Coordinate(3,4));
+    assertTrue(ell.getBestPackingUpperBound(new Tile(2,5)) == 3);
+    ell = new EllShape(3,8,new Coordinate(3,8));
+    assertTrue(ell.getBestPackingUpperBound(new Tile(2,5)) == 1);
+    ell = new EllShape(5,5,new Coordinate(5,5));
+    assertTrue(ell.getBestPackingUpperBound(new Tile(3,3)) == 1);
+    assertTrue(ell.getBestPackingUpperBound(new Tile(1,3)) == 8);
+  }
+
 
   @Test
   public void testGreedyHorizontal() {
@@ -100,6 +111,64 @@ public class EllShapeAndPartTest {
     assertTrue(pack.size() == 3);
   }
 
+  @Test
+  public void testGreedyCount() {
+    Tile tile = new Tile(2, 3);
+    for (int w = 1; w <= 12; w++)
+      for (int h = 1; h <= 12; h++)
+        for (int x = 1; x <= w; x++)
+          for (int y = 1; y <= h; y++) {
+            EllShape ell = new EllShape(w, h, new Coordinate(x, y));
+            Packing hor = ell.packGreedilyHorizontally(tile);
+            Packing ver = ell.packGreedilyVertically(tile);
+            assertEquals(hor.size(), ell.countGreedilyHorizontally(tile));
+            assertEquals(ver.size(), ell.countGreedilyVertically(tile));
+            assertEquals(ell.packGreedily(tile).size(), ell.countGreedily(tile));
+            for (Tile t : hor)
+              assertTrue(ell.contains(new Coordinate(t.getCornerX() + t.getWidth(), t.getCornerY() + t.getHeight())));
+            for (Tile t : ver)
+              assertTrue(ell.contains(new Coordinate(t.getCornerX() + t.getWidth(), t.getCornerY() + t.getHeight())));
+          }
+  }
+
+  @Test
+  public void testReduce() {
+    // Raster points of 3x5: 0, 3, 5, 6, 8, 9, 10, ...
+    Tile tile = new Tile(3, 5);
+    EllShape ell = new EllShape(8, 12, new Coordinate(4, 7));
+    EllShape reduced = ell.reduce(tile);
+    assertEquals(8, reduced.width);
+    assertEquals(12, reduced.height);
+    assertEquals(3, reduced.insideCorner.x);
+    assertEquals(6, reduced.insideCorner.y);
+    assertTrue(reduced.reduce(tile) == reduced);
+    assertEquals(new EllShape(6, 3, new Coordinate(6, 3)), new EllShape(7, 4, new Coordinate(7, 4)).reduce(tile));
+    assertEquals(0, new EllShape(2, 4, new Coordinate(2, 4)).reduce(tile).getArea());
+
+    int[] all = new int[1], restricted = new int[1];
+    ell.forEachSubdivision(sub -> ++all[0] > 0);
+    ell.forEachSubdivision(sub -> {
+      assertEquals(restricted[0]++, sub.index);
+      return true;
+    }, RasterPoints.of(tile));
+    assertTrue(0 < restricted[0] && restricted[0] < all[0]);
+  }
+
+  @Test
+  public void testKeys() {
+    RasterPoints raster = RasterPoints.of(new Tile(3, 5));
+    for (int w = 0; w <= 9; w++)
+      for (int h = 0; h <= 9; h++)
+        for (int x = 0; x <= 10; x++)
+          for (int y = 0; y <= 10; y++) {
+            EllShape ell = new EllShape(w, h, new Coordinate(x, y));
+            assertEquals(ell.key(), EllShape.normalisedKey(w, h, x, y));
+            EllShape reduced = ell.reduce(raster);
+            EllShape canonical = reduced.isCanonical() ? reduced : reduced.transpose();
+            assertEquals(canonical.key(), EllShape.canonicalKey(w, h, x, y, raster));
+          }
+  }
+
 
   @Test
   public void testContainsCoordinate0() {
@@ -174,6 +243,20 @@ public class EllShapeAndPartTest {
     assertFalse(ellShape1.equals(ellShape3));
   }
 
+  @Test
+  public void testTranspose() {
+    EllShape ell = new EllShape(7, 9, new Coordinate(3, 4));
+    EllShape transposed = ell.transpose();
+    assertTrue(transposed.equals(new EllShape(9, 7, new Coordinate(4, 3))));
+    assertTrue(transposed.transpose().equals(ell));
+    assertTrue(ell.isCanonical() != transposed.isCanonical());
+    ell = new EllShape(6, 6, new Coordinate(2, 2));
+    assertTrue(ell.isCanonical() && ell.transpose().isCanonical());
+    ell = new EllShape(6, 6, new Coordinate(4, 2));
+    assertFalse(ell.isCanonical());
+    assertTrue(ell.transpose().isCanonical());
+  }
+
 }
 
 
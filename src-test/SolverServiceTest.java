@@ -0,0 +1,162 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import batch.Instance;
+import dynamicProg.AnytimeResult;
+import geometry.Tile;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Test;
+import service.SolverServer;
+import service.SolverService;
+
+/* Tests the solver service: warm tables kept per tile (and evicted when
+   too many), identical concurrent requests solved once, requests refused
+   once closed, and the HTTP API. */
+
+public class SolverServiceTest {
+
+	@Test
+	public void testWarmTables() throws InterruptedException {
+		try (SolverService service = new SolverService(1, 2)) {
+			assertEquals(27, service.solve(new Instance(0, 21, 13, 5, 2), null).packing.size());
+			assertEquals(16, service.solve(new Instance(0, 13, 13, 2, 5), null).packing.size());
+			assertEquals(1, service.warmTables());
+			assertEquals(7, service.solve(new Instance(0, 10, 9, 4, 3), null).packing.size());
+			assertEquals(1, service.tables());
+			assertEquals(1, service.evictedTables());
+		}
+	}
+
+	@Test
+	public void testBoundedTables() throws InterruptedException, IOException {
+		Path directory = Files.createTempDirectory("spill");
+		try (SolverService service = new SolverService(1, 1, 64 << 10, directory)) {
+			assertEquals(59, service.solve(new Instance(0, 31, 27, 2, 7), null).packing.size());
+			assertEquals(7, service.solve(new Instance(0, 10, 9, 4, 3), null).packing.size());
+			// The evicted table was closed: the tile gets a new one.
+			assertEquals(59, service.solve(new Instance(0, 31, 27, 7, 2), null).packing.size());
+			assertEquals(2, service.evictedTables());
+		} finally {
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testResultOfEvictedTable() throws InterruptedException, IOException {
+		Path directory = Files.createTempDirectory("spill");
+		try (SolverService service = new SolverService(1, 1, 4 << 10, directory)) {
+			AnytimeResult result = service.solve(new Instance(0, 31, 27, 2, 7), null);
+			assertEquals(7, service.solve(new Instance(0, 10, 9, 4, 3), null).packing.size());
+			assertEquals(1, service.evictedTables());
+			// The table of the first result is closed: its tiles are still there.
+			int tiles = 0;
+			for (Tile tile : result.packing)
+				if (tile.getWidth() * tile.getHeight() == 14)
+					tiles++;
+			assertEquals(result.packing.size(), tiles);
+		} finally {
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testMergedRequests() throws InterruptedException {
+		try (SolverService service = new SolverService(4, 2)) {
+			List<Thread> clients = new ArrayList<Thread>();
+			List<AnytimeResult> results = new ArrayList<AnytimeResult>();
+			for (int i = 0; i < 8; i++) {
+				Thread client = new Thread(() -> {
+					try {
+						AnytimeResult result = service.solve(new Instance(0, 31, 27, 2, 7), null);
+						synchronized (results) {
+							results.add(result);
+						}
+					} catch (InterruptedException exc) {
+					}
+				});
+				clients.add(client);
+				client.start();
+			}
+			for (Thread client : clients)
+				client.join();
+			assertEquals(8, results.size());
+			for (AnytimeResult result : results)
+				assertTrue(result.isComplete && result.packing.size() == 59);
+			assertTrue(service.mergedRequests() > 0);
+		}
+	}
+
+	// A refused request leaves nothing in flight: the same request is
+	// refused again instead of waiting for it.
+	@Test(timeout = 10000)
+	public void testClosed() throws InterruptedException {
+		SolverService service = new SolverService(4, 2);
+		service.close();
+		for (int i = 0; i < 2; i++) {
+			try {
+				service.solve(new Instance(0, 13, 13, 5, 2), null);
+				assertTrue(false);
+			} catch (RejectedExecutionException exc) {
+			}
+		}
+	}
+
+	@Test
+	public void testDeadlineFromRequest() throws InterruptedException {
+		try (SolverService service = new SolverService(4, 1)) {
+			Thread blocker = new Thread(() -> {
+				try {
+					service.solve(new Instance(0, 90, 87, 3, 7), null);
+				} catch (InterruptedException exc) {
+				}
+			});
+			blocker.start();
+			Thread.sleep(100);
+			// Queued behind the blocker for longer than its time limit.
+			AnytimeResult result = service.solve(new Instance(0, 27, 23, 2, 7), Duration.ofMillis(400));
+			assertFalse(result.isComplete);
+			blocker.join();
+		}
+	}
+
+	private static String get(int port, String path) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+		InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		in.transferTo(body);
+		in.close();
+		return connection.getResponseCode() + " " + body.toString(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testHttp() throws IOException {
+		try (SolverServer server = new SolverServer(new SolverService(4, 2),
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+			server.start();
+			String reply = get(server.port(), "/solve?width=10&height=9&tileWidth=4&tileHeight=3&tiles=true");
+			assertTrue(reply.startsWith("200 {\"index\":0,\"width\":10,\"height\":9,"));
+			assertTrue(reply.contains("\"tiles\":7,") && reply.contains("\"coordinates\":[["));
+			assertTrue(get(server.port(), "/solve?width=10&height=9").startsWith("400 "));
+			assertTrue(get(server.port(), "/solve?width=40000&height=9&tileWidth=4&tileHeight=3")
+					.startsWith("400 {\"error\":\"ground too large: 40000x9"));
+			// Quotes of the message are escaped.
+			assertEquals("400 {\"error\":\"For input string: \\\"x\\\"\"}\n",
+					get(server.port(), "/solve?width=x&height=9&tileWidth=4&tileHeight=3"));
+			assertTrue(get(server.port(), "/stats").startsWith("200 {\"requests\":1,"));
+		}
+	}
+}
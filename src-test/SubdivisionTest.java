@@ -1,14 +1,26 @@
 import geometry.Coordinate;
+import geometry.DistinctSubdivisions;
 import geometry.EllShape;
+import geometry.Part;
+import geometry.RasterPoints;
 import geometry.Subdivision;
+import geometry.Tile;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.junit.Test;
 
 /* Tests subdivisions of L-shapes into 2 parts.
    - is a subdivision (disjoint and covering everything)
    - exhaustiveness of subdivisions.
+   - forEachSubdivision enumerates the same subdivisions as the stream.
  */
 
 public class SubdivisionTest {
@@ -37,6 +49,47 @@ public class SubdivisionTest {
 		}
 	}
 
+	private void checkSamePart(Part expected, Part part) {
+		assertTrue("same shape", expected.shape.equals(part.shape));
+		assertEquals("same position", expected.position.x, part.position.x);
+		assertEquals("same position", expected.position.y, part.position.y);
+		assertEquals("same rotation", expected.rotation, part.rotation);
+	}
+
+	public void checkVisitor() {
+		List<Subdivision> expected = ell.subdivisions().collect(Collectors.toList());
+		List<Subdivision> visited = new ArrayList<Subdivision>();
+		assertTrue(ell.forEachSubdivision(sub -> {
+			assertEquals(visited.size(), sub.index);
+			visited.add(sub.toSubdivision());
+			return true;
+		}));
+		assertEquals(expected.size(), visited.size());
+		for (int i = 0; i < expected.size(); i++) {
+			checkSamePart(expected.get(i).part1, visited.get(i).part1);
+			checkSamePart(expected.get(i).part2, visited.get(i).part2);
+		}
+	}
+
+	@Test
+	public void testVisitorMatchesStream() {
+		for (int width = 1; width <= 9; width++)
+			for (int height = 1; height <= 9; height++)
+				for (int cornerX = 1; cornerX <= width; cornerX++)
+					for (int cornerY = 1; cornerY <= height; cornerY++) {
+						ell = new EllShape(width, height, new Coordinate(cornerX, cornerY));
+						checkVisitor();
+					}
+	}
+
+	@Test
+	public void testVisitorStops() {
+		ell = new EllShape(6,5,new Coordinate(4,3));
+		int[] visits = {0};
+		assertFalse(ell.forEachSubdivision(sub -> ++visits[0] < 5));
+		assertEquals(5, visits[0]);
+	}
+
 	@Test
 	public void testEllSubdiv() {
 		ell = new EllShape(4,4,new Coordinate(2,2));
@@ -56,6 +109,7 @@ public class SubdivisionTest {
 		ell = new EllShape(17,15,new Coordinate(11,9));
 		ell.subdivisions().forEach(this::checkSubdivision);
 		assertEquals(ell.subdivisions().count(), 486);
+		checkVisitor();
 	}
 	
 	
@@ -79,6 +133,36 @@ public class SubdivisionTest {
 		ell = new EllShape(13,15,new Coordinate(13,15));
 		ell.subdivisions().forEach(this::checkSubdivision);
 		assertEquals(ell.subdivisions().count(), 1189);
+		checkVisitor();
+	}
+
+	private static Set<EllShape> pair(EllShape shape1, EllShape shape2, RasterPoints raster) {
+		shape1 = shape1.reduce(raster);
+		shape2 = shape2.reduce(raster);
+		return new HashSet<EllShape>(Arrays.asList(shape1.isCanonical() ? shape1 : shape1.transpose(),
+				shape2.isCanonical() ? shape2 : shape2.transpose()));
+	}
+
+	@Test
+	public void testDistinctSubdivisions() {
+		ell = new EllShape(17,15,new Coordinate(11,8));
+		RasterPoints raster = RasterPoints.of(new Tile(3, 5));
+		Set<Set<EllShape>> pairs = new HashSet<Set<EllShape>>();
+		int[] restricted = {0};
+		ell.forEachSubdivision(sub -> ++restricted[0] > 0, raster);
+		DistinctSubdivisions distinct = new DistinctSubdivisions(sub -> {
+			assertTrue(pairs.add(pair(sub.shape1(), sub.shape2(), raster)));
+			return true;
+		}, raster);
+		assertTrue(ell.forEachSubdivision(distinct, raster));
+		assertTrue(distinct.removed() > 0);
+		assertEquals(restricted[0], pairs.size() + distinct.removed());
+
+		// Over every subdivision, the pairs kept are those of the stream.
+		long expected = ell.subdivisions().map(sub -> pair(sub.part1.shape, sub.part2.shape, raster)).distinct().count();
+		int[] kept = {0};
+		ell.forEachSubdivision(new DistinctSubdivisions(sub -> ++kept[0] > 0, raster));
+		assertEquals(expected, kept[0]);
 	}
 
 }
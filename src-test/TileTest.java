@@ -2,10 +2,18 @@ import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import geometry.Coordinate;
+import geometry.EllShape;
+import geometry.Packing;
+import geometry.Part;
 import geometry.Rotation;
 import geometry.Tile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
-/* Tests transformations of tiles (rotation, translation, flip) */
+/* Tests transformations of tiles (rotation, translation, flip), and of
+   composed packings, whose tiles are only placed when iterated. */
 
 public class TileTest {
 
@@ -43,5 +51,77 @@ public class TileTest {
 		testTile(t,7,3,-11,-5);
 	}
 
-}
+	private static Tile move(Tile tile, Part part) {
+		Tile copy = tile.clone();
+		copy.rotateBy(part.rotation);
+		copy.translateBy(part.position);
+		return copy;
+	}
+
+	private void testSameTiles(List<Tile> expected, Packing pack) {
+		assertTrue(pack.size() == expected.size());
+		int i = 0;
+		for (Tile tile : pack) {
+			Tile other = expected.get(i++);
+			testTile(tile, other.getWidth(), other.getHeight(), other.getCornerX(), other.getCornerY());
+		}
+		assertTrue(i == expected.size());
+	}
 
+	@Test
+	public void testComposedPacking() {
+		Random random = new Random(42);
+		EllShape shape = new EllShape(1, 1, new Coordinate(1, 1));
+		for (int trial = 0; trial < 200; trial++) {
+			Packing base = new Packing();
+			List<Tile> expected = new ArrayList<Tile>();
+			for (int i = 0; i < 3; i++) {
+				Tile tile = new Tile(1 + random.nextInt(5), 1 + random.nextInt(5), random.nextInt(9), random.nextInt(9));
+				base.addTile(tile);
+				expected.add(tile);
+			}
+			Packing pack = base;
+			for (int step = 0; step < 6; step++) {
+				List<Tile> moved = new ArrayList<Tile>();
+				if (random.nextBoolean()) {
+					pack = pack.transpose();
+					for (Tile tile : expected)
+						moved.add(new Tile(tile.getHeight(), tile.getWidth(), tile.getCornerY(), tile.getCornerX()));
+				} else {
+					Part part = new Part(shape, new Coordinate(random.nextInt(21) - 10, random.nextInt(21) - 10),
+							Rotation.values()[random.nextInt(4)]);
+					pack = pack.transform(part);
+					for (Tile tile : expected)
+						moved.add(move(tile, part));
+				}
+				expected = moved;
+				testSameTiles(expected, pack);
+			}
+			// Concatenation shares both operands, which are left unchanged.
+			Packing twice = Packing.concat(pack, base);
+			List<Tile> both = new ArrayList<Tile>(expected);
+			for (Tile tile : base)
+				both.add(tile);
+			testSameTiles(both, twice);
+			twice.addTile(new Tile(1, 1));
+			assertTrue(twice.size() == both.size() + 1 && pack.size() == expected.size() && base.size() == 3);
+		}
+	}
+
+	@Test
+	public void testForEachTile() {
+		Packing base = new Packing();
+		Tile added = new Tile(2, 3, 1, 1);
+		base.addTile(added);
+		added.translateBy(5, 5);
+		for (int i = 0; i < 100; i++)
+			base.addTile(1 + i % 4, 1 + i % 3, 3 * i, 7 * i);
+		Packing pack = Packing.concat(base.transpose(), base.transform(
+				new Part(new EllShape(1, 1, new Coordinate(1, 1)), new Coordinate(4, -2), Rotation.QUARTER)));
+		List<Tile> visited = new ArrayList<Tile>();
+		pack.forEachTile((x, y, width, height) -> visited.add(new Tile(width, height, x, y)));
+		testSameTiles(visited, pack);
+		testTile(visited.get(0), 3, 2, 1, 1);
+	}
+
+}
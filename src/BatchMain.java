@@ -0,0 +1,127 @@
+
+/* usage: java BatchMain [options] instances
+
+   Headless counterpart of Main: solves every instance of the file (four
+   integers each: width and height of the ground, then of the tile; - for
+   the standard input) on a pool of workers, and prints one record per
+   instance, in the order of the file (see batch.ResultWriter). The file is
+   streamed, so it may hold any number of instances (see
+   batch.InstancePipeline).
+
+   options:
+     --workers n     number of instances solved at once (default: number
+                     of processors)
+     --format f      json (default) or csv
+     --solver s      auto (default), dense, bounded or sequential
+     --time-limit s  seconds allowed per instance; the best packing found
+                     is written, with its gap to the upper bound
+     --tiles         add the coordinates of the tiles
+     --output file   write into file instead of the standard output
+     --window n      number of instances read ahead of the output
+                     (default: 4 per worker)
+     --unordered     write the records as soon as they are known
+ */
+
+import batch.BatchSolver;
+import batch.InstancePipeline;
+import batch.InstanceReader;
+import batch.ResultWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+public class BatchMain {
+
+	private static void usage(String message) {
+		System.err.println(message);
+		System.err.println("usage: java BatchMain [--workers n] [--format json|csv]"
+				+ " [--solver auto|dense|bounded|sequential] [--time-limit seconds] [--tiles] [--output file]"
+				+ " [--window n] [--unordered] instances");
+		System.exit(2);
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int workers = Runtime.getRuntime().availableProcessors();
+		String format = "json";
+		String solver = "auto";
+		Duration timeLimit = null;
+		boolean withTiles = false;
+		String output = null;
+		String input = null;
+		int window = -1;
+		boolean ordered = true;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "--workers":
+					workers = Integer.parseInt(args[++i]);
+					break;
+				case "--format":
+					format = args[++i];
+					break;
+				case "--solver":
+					solver = args[++i];
+					break;
+				case "--time-limit":
+					timeLimit = Duration.ofMillis((long) (Double.parseDouble(args[++i]) * 1000));
+					break;
+				case "--tiles":
+					withTiles = true;
+					break;
+				case "--output":
+					output = args[++i];
+					break;
+				case "--window":
+					window = Integer.parseInt(args[++i]);
+					break;
+				case "--unordered":
+					ordered = false;
+					break;
+				default:
+					if ((args[i].startsWith("-") && !args[i].equals("-")) || input != null)
+						usage("unexpected argument: " + args[i]);
+					input = args[i];
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | NumberFormatException exc) {
+			usage("bad option value");
+		}
+		if (input == null)
+			usage("no instance file");
+
+		if (window < 0)
+			window = 4 * workers;
+		InstanceReader reader = new InstanceReader(
+				input.equals("-") ? Channels.newChannel(System.in) : FileChannel.open(Paths.get(input)));
+		Writer out = (output != null) ? Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)
+				: new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		InstancePipeline pipeline = null;
+		ResultWriter writer = null;
+		try {
+			pipeline = new InstancePipeline(new BatchSolver(solver, workers, timeLimit), window, ordered);
+			writer = ResultWriter.of(format, out, withTiles);
+		} catch (IllegalArgumentException exc) {
+			usage(exc.getMessage());
+		}
+
+		// From here on, the options are valid: a bad instance, or a failure
+		// to read or write, is reported as such, without the usage.
+		try (ResultWriter results = writer) {
+			pipeline.run(reader, results);
+		} catch (IOException exc) {
+			System.err.println((exc.getCause() != null) ? exc.getMessage() + ": " + exc.getCause() : exc.getMessage());
+			System.exit(1);
+		} finally {
+			reader.close();
+		}
+		if (output != null)
+			out.close();
+	}
+}
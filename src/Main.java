@@ -3,7 +3,7 @@
 
  */
 
-import dynamicProg.DynamicProgrammingSolver;
+import dynamicProg.SolverCache;
 import geometry.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
@@ -17,6 +17,7 @@ import javax.swing.JFrame;
 public class Main {
 
 	private static Scanner sc;
+	private final static SolverCache cache = new SolverCache();
 	private final static JFrame window = new JFrame("Solution");
 	private final static DrawArea pict = new DrawArea(13, 13);
 	private final static MouseAdapter readAndDrawOnClick = new ReadDrawOnClickHandler();
@@ -33,8 +34,7 @@ public class Main {
 			int h = sc.nextInt();
 			EllShape ground = new EllShape(width, height, new Coordinate(width, height));
 			Tile basicTile = new Tile(w, h);
-			DynamicProgrammingSolver dyn = new DynamicProgrammingSolver(ground, basicTile);
-			Packing sol = dyn.solve();
+			Packing sol = cache.solve(ground, basicTile);
 
 			pict.clear();
 			pict.setSize(new Dimension(width, height));
@@ -0,0 +1,67 @@
+
+/* usage: java ServiceMain [--port p] [--tables n] [--threads n] [--table-mb n] [--spill dir]
+
+   Runs a solver daemon on the local host (see service.SolverServer):
+     --port p      port to listen to (default: 8080)
+     --tables n    number of tiles whose memo table is kept warm
+                   (default: 16)
+     --threads n   number of solves at once (default: number of
+                   processors)
+     --table-mb n  MiB of packings kept on the heap by each memo table
+                   (default: half of the heap divided by the number of
+                   tables)
+     --spill dir   directory of the spill files of the memo tables
+                   (default: the temporary directory)
+ */
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import service.SolverServer;
+import service.SolverService;
+
+public class ServiceMain {
+
+	public static void main(String[] args) throws IOException {
+		int port = 8080;
+		int tables = 16;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long tableBudget = -1;
+		Path spill = Paths.get(System.getProperty("java.io.tmpdir"));
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "--port":
+					port = Integer.parseInt(args[++i]);
+					break;
+				case "--tables":
+					tables = Integer.parseInt(args[++i]);
+					break;
+				case "--threads":
+					threads = Integer.parseInt(args[++i]);
+					break;
+				case "--table-mb":
+					tableBudget = Long.parseLong(args[++i]) << 20;
+					break;
+				case "--spill":
+					spill = Paths.get(args[++i]);
+					break;
+				default:
+					throw new IllegalArgumentException("unexpected argument: " + args[i]);
+				}
+			}
+		} catch (RuntimeException exc) {
+			System.err.println(exc.getMessage());
+			System.err.println("usage: java ServiceMain [--port p] [--tables n] [--threads n] [--table-mb n] [--spill dir]");
+			System.exit(2);
+		}
+		if (tableBudget < 0)
+			tableBudget = Runtime.getRuntime().maxMemory() / tables / 2;
+		SolverServer server = new SolverServer(new SolverService(tables, threads, tableBudget, spill),
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		server.start();
+		System.out.println("Listening on port " + server.port());
+	}
+}
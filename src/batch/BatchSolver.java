@@ -0,0 +1,105 @@
+package batch;
+
+/* A BatchSolver solves a list of instances on a pool of worker threads,
+   each instance with its own solver, and writes their results in the order
+   of the list, as soon as they are known.
+
+   The solver is chosen by name:
+   - dense: DenseDynamicProgrammingSolver,
+   - bounded: BoundedDynamicProgrammingSolver,
+   - sequential: DynamicProgrammingSolver,
+   - auto (the default): dense if its table fits into the share of the heap
+     of one worker (see tableBudget), bounded otherwise. The choice is made
+     from the size of the table before any solver is built.
+   The top-down solvers recurse once per nested L-shape, so the workers
+   have a large stack.
+
+   With a time limit, each instance is solved as an anytime solve (see
+   DynamicProgrammingSolver.solve(Instant, Cancellation, Consumer)), and
+   its result may be a packing which is not proved optimal. */
+
+import dynamicProg.AnytimeResult;
+import dynamicProg.BoundedDynamicProgrammingSolver;
+import dynamicProg.DenseDynamicProgrammingSolver;
+import dynamicProg.DynamicProgrammingSolver;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchSolver {
+	private static final long WORKER_STACK_SIZE = 512L << 20;
+
+	private final String solver;
+	private final int workers;
+	private final Duration timeLimit;
+
+	public BatchSolver(String solver, int workers, Duration timeLimit) {
+		if (!List.of("auto", "dense", "bounded", "sequential").contains(solver))
+			throw new IllegalArgumentException("unknown solver: " + solver);
+		if (workers <= 0)
+			throw new IllegalArgumentException("at least one worker is needed");
+		this.solver = solver;
+		this.workers = workers;
+		this.timeLimit = timeLimit;
+	}
+
+	DynamicProgrammingSolver newSolver(Instance instance) {
+		switch (solver) {
+		case "dense":
+			return new DenseDynamicProgrammingSolver(instance.ground(), instance.tile());
+		case "bounded":
+			return new BoundedDynamicProgrammingSolver(instance.ground(), instance.tile());
+		case "sequential":
+			return new DynamicProgrammingSolver(instance.ground(), instance.tile());
+		}
+		if (DenseDynamicProgrammingSolver.fits(instance.ground(), instance.tile(), tableBudget()))
+			return new DenseDynamicProgrammingSolver(instance.ground(), instance.tile());
+		return new BoundedDynamicProgrammingSolver(instance.ground(), instance.tile());
+	}
+
+	// Half of the share of the heap of each worker: the other half is left
+	// for the packings, and for the instances and results in flight.
+	long tableBudget() {
+		return Runtime.getRuntime().maxMemory() / workers / 2;
+	}
+
+	public InstanceResult solve(Instance instance) {
+		long start = System.nanoTime();
+		Instant deadline = (timeLimit != null) ? Instant.now().plus(timeLimit) : null;
+		AnytimeResult result = newSolver(instance).solve(deadline, null, null);
+		return new InstanceResult(instance, result, System.nanoTime() - start);
+	}
+
+	ExecutorService newPool() {
+		AtomicInteger count = new AtomicInteger();
+		return Executors.newFixedThreadPool(workers,
+				task -> new Thread(null, task, "batch-worker-" + count.incrementAndGet(), WORKER_STACK_SIZE));
+	}
+
+	// Solves a list of instances held in memory; for a stream of instances,
+	// see InstancePipeline.
+	public void solveAll(List<Instance> instances, ResultWriter writer) throws IOException, InterruptedException {
+		ExecutorService pool = newPool();
+		try {
+			List<Future<InstanceResult>> results = new ArrayList<Future<InstanceResult>>();
+			for (Instance instance : instances)
+				results.add(pool.submit(() -> solve(instance)));
+			for (Future<InstanceResult> result : results) {
+				try {
+					writer.write(result.get());
+				} catch (ExecutionException exc) {
+					throw new IOException("failed to solve an instance", exc.getCause());
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package batch;
+
+/* An Instance is one line of an instance file: the width and height of a
+   rectangular ground, and the width and height of the tile, as read by
+   Main. The index is the rank of the instance in the file, from 0. */
+
+import geometry.Coordinate;
+import geometry.EllShape;
+import geometry.Tile;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+public class Instance {
+	public final int index;
+	public final int width;
+	public final int height;
+	public final int tileWidth;
+	public final int tileHeight;
+
+	public Instance(int index, int width, int height, int tileWidth, int tileHeight) {
+		if (width <= 0 || height <= 0 || tileWidth <= 0 || tileHeight <= 0)
+			throw new IllegalArgumentException("instance " + index + ": sizes must be positive");
+		this.index = index;
+		this.width = width;
+		this.height = height;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+	}
+
+	public EllShape ground() {
+		return new EllShape(width, height, new Coordinate(width, height));
+	}
+
+	public Tile tile() {
+		return new Tile(tileWidth, tileHeight);
+	}
+
+	// Reads instances, four integers each, until the end of input.
+	public static List<Instance> readAll(Reader input) throws IOException {
+		List<Instance> instances = new ArrayList<Instance>();
+		try (Scanner sc = new Scanner(input)) {
+			while (sc.hasNext()) {
+				try {
+					instances.add(new Instance(instances.size(), sc.nextInt(), sc.nextInt(), sc.nextInt(), sc.nextInt()));
+				} catch (NoSuchElementException exc) {
+					throw new IOException("instance " + instances.size() + ": four integers expected");
+				}
+			}
+			if (sc.ioException() != null)
+				throw sc.ioException();
+		}
+		return instances;
+	}
+
+	@Override
+	public String toString() {
+		return width + " " + height + " " + tileWidth + " " + tileHeight;
+	}
+}
@@ -0,0 +1,159 @@
+package batch;
+
+/* An InstancePipeline solves a stream of instances of any length in
+   constant memory. Three stages run at the same time:
+
+   - the calling thread parses the instances (see InstanceReader) and
+     submits them to the workers of a BatchSolver,
+   - the workers solve them,
+   - a writer thread writes their results, either in the order of the input
+     (keeping the results which arrive early), or as soon as they are known.
+
+   At most window instances are between the parser and the writer: the
+   parser waits for a permit before submitting an instance, and the writer
+   gives it back once the result is written. So the number of instances and
+   results in memory is bounded by window, and the parser never runs ahead
+   of a slow solver or a slow output. */
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+public class InstancePipeline {
+	private final BatchSolver solver;
+	private final int window;
+	private final boolean ordered;
+
+	public InstancePipeline(BatchSolver solver, int window, boolean ordered) {
+		if (window <= 0)
+			throw new IllegalArgumentException("the window must hold at least one instance");
+		this.solver = solver;
+		this.window = window;
+		this.ordered = ordered;
+	}
+
+	// What a worker hands to the writer: a result, a failure, or the end of
+	// the input (with the number of instances).
+	private static class Outcome {
+		final InstanceResult result;
+		final Throwable failure;
+		final int total;
+
+		Outcome(InstanceResult result, Throwable failure, int total) {
+			this.result = result;
+			this.failure = failure;
+			this.total = total;
+		}
+	}
+
+	private class Sink extends Thread {
+		final LinkedBlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<Outcome>();
+		final Semaphore permits;
+		final ResultWriter out;
+		volatile Throwable failure = null;
+
+		Sink(Semaphore permits, ResultWriter out) {
+			super("batch-writer");
+			this.permits = permits;
+			this.out = out;
+		}
+
+		@Override
+		public void run() {
+			HashMap<Integer, InstanceResult> early = new HashMap<Integer, InstanceResult>();
+			int written = 0, total = -1;
+			try {
+				while (written != total) {
+					Outcome outcome = outcomes.take();
+					if (outcome.failure != null)
+						throw outcome.failure;
+					if (outcome.result == null) {
+						total = outcome.total;
+						continue;
+					}
+					if (!ordered) {
+						write(outcome.result);
+						written++;
+						continue;
+					}
+					early.put(outcome.result.instance.index, outcome.result);
+					for (InstanceResult next = early.remove(written); next != null; next = early.remove(written)) {
+						write(next);
+						written++;
+					}
+				}
+			} catch (Throwable exc) {
+				failure = exc;
+				// Unblocks the parser, which then stops.
+				permits.release(window);
+			}
+		}
+
+		private void write(InstanceResult result) throws IOException {
+			out.write(result);
+			permits.release();
+		}
+	}
+
+	// Returns the number of instances solved. Whatever stops the parser (a
+	// failure, or an interruption while waiting for a permit), the writer is
+	// given the end of the stream, or a failure which stops it, and waited
+	// for: it is never left waiting for outcomes which will not come.
+	public int run(InstanceReader reader, ResultWriter out) throws IOException, InterruptedException {
+		Semaphore permits = new Semaphore(window);
+		Sink writer = new Sink(permits, out);
+		ExecutorService pool = solver.newPool();
+		writer.start();
+		int count = 0;
+		boolean parsed = false;
+		try {
+			for (Instance next = reader.next(); next != null; next = reader.next()) {
+				Instance instance = next;
+				permits.acquire();
+				if (writer.failure != null)
+					break;
+				pool.execute(() -> {
+					try {
+						writer.outcomes.add(new Outcome(solver.solve(instance), null, 0));
+					} catch (Throwable exc) {
+						writer.outcomes.add(new Outcome(null, exc, 0));
+					}
+				});
+				count++;
+			}
+			parsed = true;
+		} finally {
+			pool.shutdown();
+			if (parsed) {
+				writer.outcomes.add(new Outcome(null, null, count));
+			} else {
+				writer.outcomes.add(new Outcome(null, new IllegalStateException("parsing stopped"), 0));
+				pool.shutdownNow();
+			}
+			join(writer);
+		}
+		pool.shutdownNow();
+		if (writer.failure instanceof IOException)
+			throw (IOException) writer.failure;
+		if (writer.failure != null)
+			throw new IOException("failed to solve an instance", writer.failure);
+		return count;
+	}
+
+	// Waits for thread even if interrupted, keeping the interruption.
+	private static void join(Thread thread) {
+		boolean interrupted = false;
+		for (;;) {
+			try {
+				thread.join();
+				break;
+			} catch (InterruptedException exc) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+}
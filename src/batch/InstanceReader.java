@@ -0,0 +1,88 @@
+package batch;
+
+/* An InstanceReader parses instances (four integers each, see Instance)
+   from a channel, one chunk of bytes at a time: whatever the size of the
+   input, it only holds one buffer, and returns the instances one by one.
+   The integers are separated by any ASCII whitespace. */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+public class InstanceReader implements AutoCloseable {
+	private static final int CHUNK = 1 << 16;
+
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK);
+	private boolean endOfInput = false;
+	private long position = 0;
+	private int count = 0;
+
+	public InstanceReader(ReadableByteChannel channel) {
+		this.channel = channel;
+		buffer.flip();
+	}
+
+	// The next byte, or -1 at the end of the input.
+	private int read() throws IOException {
+		while (!buffer.hasRemaining()) {
+			if (endOfInput)
+				return -1;
+			buffer.clear();
+			endOfInput = channel.read(buffer) < 0;
+			buffer.flip();
+		}
+		position++;
+		return buffer.get() & 0xff;
+	}
+
+	private void unread() {
+		buffer.position(buffer.position() - 1);
+		position--;
+	}
+
+	private static boolean isSpace(int c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+	}
+
+	// The next integer, or -1 if the input only has whitespace left.
+	private int nextInt() throws IOException {
+		int c = read();
+		while (isSpace(c))
+			c = read();
+		if (c < 0)
+			return -1;
+		if (c < '0' || c > '9')
+			throw new IOException("byte " + (position - 1) + ": digit expected");
+		long value = 0;
+		while (c >= '0' && c <= '9') {
+			value = 10 * value + (c - '0');
+			if (value > Integer.MAX_VALUE)
+				throw new IOException("byte " + (position - 1) + ": integer too large");
+			c = read();
+		}
+		if (c >= 0 && !isSpace(c))
+			throw new IOException("byte " + (position - 1) + ": digit expected");
+		if (c >= 0)
+			unread();
+		return (int) value;
+	}
+
+	// The next instance, or null at the end of the input.
+	public Instance next() throws IOException {
+		int width = nextInt();
+		if (width < 0)
+			return null;
+		int height = nextInt(), tileWidth = nextInt(), tileHeight = nextInt();
+		if (tileHeight < 0)
+			throw new IOException("instance " + count + ": four integers expected");
+		if (width == 0 || height == 0 || tileWidth == 0 || tileHeight == 0)
+			throw new IOException("instance " + count + ": sizes must be positive");
+		return new Instance(count++, width, height, tileWidth, tileHeight);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,23 @@
+package batch;
+
+/* The result of the solve of one Instance: the packing found, with the
+   proof of its quality (see AnytimeResult), and the time spent. */
+
+import dynamicProg.AnytimeResult;
+import geometry.Packing;
+
+public class InstanceResult {
+	public final Instance instance;
+	public final AnytimeResult result;
+	public final long nanos;
+
+	public InstanceResult(Instance instance, AnytimeResult result, long nanos) {
+		this.instance = instance;
+		this.result = result;
+		this.nanos = nanos;
+	}
+
+	public Packing packing() {
+		return result.packing;
+	}
+}
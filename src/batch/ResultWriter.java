@@ -0,0 +1,113 @@
+package batch;
+
+/* A ResultWriter writes one record per InstanceResult, either as JSON (one
+   object per line) or as CSV (with a header line). A record holds the
+   instance, the number of tiles, the upper bound, whether the packing is
+   proved optimal with the remaining gap, whether the search went through,
+   and the runtime in milliseconds. The coordinates of the tiles are added
+   on demand: in JSON as an array of [x, y, width, height], in CSV as a
+   field of x:y:width:height separated by semicolons. */
+
+import geometry.Tile;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+public abstract class ResultWriter implements AutoCloseable {
+	protected final Writer out;
+	protected final boolean withTiles;
+
+	protected ResultWriter(Writer out, boolean withTiles) {
+		this.out = out;
+		this.withTiles = withTiles;
+	}
+
+	public static ResultWriter of(String format, Writer out, boolean withTiles) {
+		switch (format) {
+		case "json":
+			return new Json(out, withTiles);
+		case "csv":
+			return new Csv(out, withTiles);
+		}
+		throw new IllegalArgumentException("unknown format: " + format);
+	}
+
+	public abstract void write(InstanceResult result) throws IOException;
+
+	protected static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.flush();
+	}
+
+	private static class Json extends ResultWriter {
+		Json(Writer out, boolean withTiles) {
+			super(out, withTiles);
+		}
+
+		@Override
+		public void write(InstanceResult result) throws IOException {
+			Instance instance = result.instance;
+			StringBuilder line = new StringBuilder();
+			line.append("{\"index\":").append(instance.index)
+					.append(",\"width\":").append(instance.width)
+					.append(",\"height\":").append(instance.height)
+					.append(",\"tileWidth\":").append(instance.tileWidth)
+					.append(",\"tileHeight\":").append(instance.tileHeight)
+					.append(",\"tiles\":").append(result.packing().size())
+					.append(",\"upperBound\":").append(result.result.upperBound)
+					.append(",\"optimal\":").append(result.result.isOptimal())
+					.append(",\"gap\":").append(result.result.gap())
+					.append(",\"complete\":").append(result.result.isComplete)
+					.append(",\"runtimeMs\":").append(millis(result.nanos));
+			if (withTiles) {
+				line.append(",\"coordinates\":[");
+				String separator = "";
+				for (Tile tile : result.packing()) {
+					line.append(separator).append('[').append(tile.getCornerX()).append(',').append(tile.getCornerY())
+							.append(',').append(tile.getWidth()).append(',').append(tile.getHeight()).append(']');
+					separator = ",";
+				}
+				line.append(']');
+			}
+			out.write(line.append("}\n").toString());
+		}
+	}
+
+	private static class Csv extends ResultWriter {
+		private boolean header = false;
+
+		Csv(Writer out, boolean withTiles) {
+			super(out, withTiles);
+		}
+
+		@Override
+		public void write(InstanceResult result) throws IOException {
+			if (!header) {
+				out.write("index,width,height,tileWidth,tileHeight,tiles,upperBound,optimal,gap,complete,runtimeMs"
+						+ (withTiles ? ",coordinates" : "") + "\n");
+				header = true;
+			}
+			Instance instance = result.instance;
+			StringBuilder line = new StringBuilder();
+			line.append(instance.index).append(',').append(instance.width).append(',').append(instance.height)
+					.append(',').append(instance.tileWidth).append(',').append(instance.tileHeight)
+					.append(',').append(result.packing().size()).append(',').append(result.result.upperBound)
+					.append(',').append(result.result.isOptimal()).append(',').append(result.result.gap())
+					.append(',').append(result.result.isComplete).append(',').append(millis(result.nanos));
+			if (withTiles) {
+				line.append(',');
+				String separator = "";
+				for (Tile tile : result.packing()) {
+					line.append(separator).append(tile.getCornerX()).append(':').append(tile.getCornerY())
+							.append(':').append(tile.getWidth()).append(':').append(tile.getHeight());
+					separator = ";";
+				}
+			}
+			out.write(line.append('\n').toString());
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package dynamicProg;
+
+/* An AnswerTable holds the optimal number of tiles of every rectangle of
+   width at most maxWidth and height at most maxHeight, for one tile, so
+   that any of them is answered by count in constant time.
+
+   All the rectangles are solved in a single sweep: by one dense solve of
+   the largest one, whose table holds all the others (see
+   DenseDynamicProgrammingSolver), or, when that table is too large, by
+   solving them in increasing order with a top-down solver sharing one
+   MemoTable, so that each of them mostly reuses the shapes solved for the
+   previous ones. Only the rectangles whose sides are raster points of the
+   tile are solved (see EllShape.reduce): the others have the count of
+   their reduced rectangle.
+
+   The count of a row (a height) never decreases with the width, and only
+   increases at raster points. A row is exported as the list of its
+   breakpoints: the widths at which its count increases, with the new
+   count. The text format (see write and read) is a header line with the
+   sides of the tile and maxWidth, maxHeight, then one line per height:
+     height width:count width:count ...
+ */
+
+import geometry.Coordinate;
+import geometry.EllShape;
+import geometry.RasterPoints;
+import geometry.Tile;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+public class AnswerTable {
+	public final Tile basicTile;
+	public final int maxWidth;
+	public final int maxHeight;
+	// counts[height * (maxWidth + 1) + width]
+	private final int[] counts;
+
+	private AnswerTable(Tile basicTile, int maxWidth, int maxHeight, int[] counts) {
+		this.basicTile = basicTile;
+		this.maxWidth = maxWidth;
+		this.maxHeight = maxHeight;
+		this.counts = counts;
+	}
+
+	// Solves with a dense table if it fits in tableBudget(), top-down with a
+	// MemoTable otherwise.
+	public static AnswerTable compute(Tile basicTile, int maxWidth, int maxHeight) {
+		if (maxWidth >= 0 && maxHeight >= 0
+				&& DenseDynamicProgrammingSolver.fits(rectangle(maxWidth, maxHeight), basicTile, tableBudget())) {
+			DenseDynamicProgrammingSolver dense = new DenseDynamicProgrammingSolver(rectangle(maxWidth, maxHeight),
+					basicTile);
+			return compute(basicTile, maxWidth, maxHeight, ell -> dense.count(ell));
+		}
+		return compute(basicTile, maxWidth, maxHeight, new MemoTable(basicTile));
+	}
+
+	// Half of the heap: the other half is left for the counts and the
+	// packings of the sweep.
+	static long tableBudget() {
+		return Runtime.getRuntime().maxMemory() / 2;
+	}
+
+	// Solves top-down, with table (a SpillingMemoTable keeps the sweep
+	// within a memory budget).
+	public static AnswerTable compute(Tile basicTile, int maxWidth, int maxHeight, MemoTable table) {
+		return compute(basicTile, maxWidth, maxHeight,
+				ell -> new DynamicProgrammingSolver(ell, basicTile, table).retrieveOptimalSolution(ell).size());
+	}
+
+	private interface Counter {
+		int count(EllShape ell);
+	}
+
+	private static EllShape rectangle(int width, int height) {
+		return new EllShape(width, height, new Coordinate(width, height));
+	}
+
+	private static AnswerTable compute(Tile basicTile, int maxWidth, int maxHeight, Counter counter) {
+		if (maxWidth < 0 || maxHeight < 0)
+			throw new IllegalArgumentException("negative size: " + maxWidth + "x" + maxHeight);
+		RasterPoints raster = RasterPoints.of(basicTile);
+		int[] counts = new int[(maxWidth + 1) * (maxHeight + 1)];
+		for (int height = 1; height <= maxHeight; height++)
+			for (int width = 1; width <= maxWidth; width++) {
+				int reducedWidth = raster.floor(width), reducedHeight = raster.floor(height);
+				if (reducedWidth == width && reducedHeight == height)
+					counts[height * (maxWidth + 1) + width] = counter.count(rectangle(width, height));
+				else
+					counts[height * (maxWidth + 1) + width] = counts[reducedHeight * (maxWidth + 1) + reducedWidth];
+			}
+		return new AnswerTable(basicTile, maxWidth, maxHeight, counts);
+	}
+
+	public int count(int width, int height) {
+		if (width < 0 || height < 0 || width > maxWidth || height > maxHeight)
+			throw new IllegalArgumentException("rectangle out of the table: " + width + "x" + height);
+		return counts[height * (maxWidth + 1) + width];
+	}
+
+	// The widths at which the count of the row height increases, and the
+	// counts from there on, as (width, count) pairs.
+	public int[] breakpoints(int height) {
+		int[] result = new int[2 * (maxWidth + 1)];
+		int length = 0, previous = 0;
+		for (int width = 0; width <= maxWidth; width++) {
+			int count = count(width, height);
+			if (count > previous) {
+				result[length++] = width;
+				result[length++] = count;
+				previous = count;
+			}
+		}
+		return Arrays.copyOf(result, length);
+	}
+
+	public void write(Writer out) throws IOException {
+		out.write(basicTile.getWidth() + " " + basicTile.getHeight() + " " + maxWidth + " " + maxHeight + "\n");
+		for (int height = 0; height <= maxHeight; height++) {
+			StringBuilder line = new StringBuilder().append(height);
+			int[] breakpoints = breakpoints(height);
+			for (int i = 0; i < breakpoints.length; i += 2)
+				line.append(' ').append(breakpoints[i]).append(':').append(breakpoints[i + 1]);
+			out.write(line.append('\n').toString());
+		}
+		out.flush();
+	}
+
+	public static AnswerTable read(Reader in) throws IOException {
+		BufferedReader reader = new BufferedReader(in);
+		try {
+			int[] header = Arrays.stream(line(reader).split("\\s+")).mapToInt(Integer::parseInt).toArray();
+			int maxWidth = header[2], maxHeight = header[3];
+			int[] counts = new int[(maxWidth + 1) * (maxHeight + 1)];
+			for (int height = 0; height <= maxHeight; height++) {
+				String[] fields = line(reader).split("\\s+");
+				if (Integer.parseInt(fields[0]) != height)
+					throw new IOException("answer table: row " + height + " expected, found " + fields[0]);
+				int width = 0, count = 0;
+				for (int i = 1; i < fields.length; i++) {
+					int colon = fields[i].indexOf(':');
+					int next = Integer.parseInt(fields[i].substring(0, colon));
+					for (; width < next; width++)
+						counts[height * (maxWidth + 1) + width] = count;
+					count = Integer.parseInt(fields[i].substring(colon + 1));
+				}
+				for (; width <= maxWidth; width++)
+					counts[height * (maxWidth + 1) + width] = count;
+			}
+			return new AnswerTable(new Tile(header[0], header[1]), maxWidth, maxHeight, counts);
+		} catch (NumberFormatException | IndexOutOfBoundsException exc) {
+			throw new IOException("malformed answer table", exc);
+		}
+	}
+
+	private static String line(BufferedReader reader) throws IOException {
+		String line = reader.readLine();
+		if (line == null)
+			throw new IOException("answer table truncated");
+		return line.trim();
+	}
+}
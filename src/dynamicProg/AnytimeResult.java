@@ -0,0 +1,29 @@
+package dynamicProg;
+
+/* The result of an anytime solve: the best packing found, the upper bound
+   of the ground (EllShape.getBestPackingUpperBound) and whether the search
+   went through. When it did, the packing is optimal and the gap is 0, even
+   if the upper bound is not reached. Otherwise the optimum lies between
+   the size of the packing and the upper bound. */
+
+import geometry.Packing;
+
+public class AnytimeResult {
+	public final Packing packing;
+	public final int upperBound;
+	public final boolean isComplete;
+
+	public AnytimeResult(Packing packing, int upperBound, boolean isComplete) {
+		this.packing = packing;
+		this.upperBound = upperBound;
+		this.isComplete = isComplete;
+	}
+
+	public int gap() {
+		return isComplete ? 0 : upperBound - packing.size();
+	}
+
+	public boolean isOptimal() {
+		return gap() == 0;
+	}
+}
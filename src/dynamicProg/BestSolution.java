@@ -1,7 +1,11 @@
 package dynamicProg;
 
+import geometry.BlockHeuristic;
+import geometry.Coordinate;
 import geometry.EllShape;
+import geometry.PackedSubdivision;
 import geometry.Packing;
+import geometry.Part;
 import geometry.Subdivision;
 import geometry.Tile;
 
@@ -24,28 +28,103 @@ import geometry.Tile;
  */
 
 class BestSolution {
-	private final int trivialBound;
+	private final int upperBound;
+	private final EllShape ground;
+	private final Tile basicTile;
+	// The initial packing (greedy, or from the block heuristic of the solver
+	// when it is better) is only counted: bestSoFar stays null until a
+	// subdivision beats it, or until best() builds it.
+	private int bestSize;
 	private Packing bestSoFar;
+	private BlockHeuristic heuristic = null;
 	private DynamicProgrammingSolver solver;
+	private Runnable listener = null;
+	// For SolverMetrics.
+	private int offered = 0;
+	private int improvements = 0;
 
 	public BestSolution(EllShape ground, Tile basicTile, DynamicProgrammingSolver solver) {
-		trivialBound = ground.getPackingUpperBound(basicTile);
-		bestSoFar = ground.packGreedily(basicTile);
+		upperBound = ground.getBestPackingUpperBound(basicTile);
+		bestSize = ground.countGreedily(basicTile);
+		this.ground = ground;
+		this.basicTile = basicTile;
 		this.solver = solver;
+		BlockHeuristic blocks = solver.initialHeuristic();
+		if (blocks != null && bestSize < upperBound) {
+			int count = blocks.count(ground);
+			if (count > bestSize) {
+				bestSize = count;
+				heuristic = blocks;
+			}
+		}
 	}
 
-	public boolean isValid() { return bestSoFar.size() > 0; }
+	// listener is run after every improvement of the solution.
+	public void onImprovement(Runnable listener) {
+		this.listener = listener;
+	}
+
+	private void improved() {
+		improvements++;
+		if (listener != null)
+			listener.run();
+	}
+
+	public boolean isValid() { return bestSize > 0; }
 	// Car si on ne peut mme pas placer une seule tuile, c'est peine perdue.
 
-	public boolean isOptimal() { return bestSoFar.size() == trivialBound; }
+	public boolean isOptimal() { return bestSize == upperBound; }
+
+	// Same as accept(Subdivision), the parts being only built if they win.
+	public void accept(PackedSubdivision subdivision) {
+		offered++;
+		EllShape shape1 = subdivision.shape1();
+		EllShape shape2 = subdivision.shape2();
+		solver.prefetch(shape2);
+		Packing pack1 = solver.retrieveOptimalSolution(shape1);
+		Packing pack2 = solver.retrieveOptimalSolution(shape2);
+		if (bestSize < pack1.size() + pack2.size()) {
+			bestSize = pack1.size() + pack2.size();
+			bestSoFar = Packing.concat(
+					pack1.transform(new Part(shape1,
+							new Coordinate(subdivision.positionX1, subdivision.positionY1), subdivision.rotation1)),
+					pack2.transform(new Part(shape2,
+							new Coordinate(subdivision.positionX2, subdivision.positionY2), subdivision.rotation2)));
+			improved();
+		}
+	}
 
 	public void accept(Subdivision subdivision) {
+		offered++;
+		solver.prefetch(subdivision.part2.shape);
 		Packing pack1 = solver.retrieveOptimalSolution(subdivision.part1.shape);
 		Packing pack2 = solver.retrieveOptimalSolution(subdivision.part2.shape);
-		Packing	pack = Packing.concat(pack1.transform(subdivision.part1), pack2.transform(subdivision.part2));
-		if (bestSoFar.size() < pack.size())
+		// The packing is only built when the subdivision wins.
+		if (bestSize < pack1.size() + pack2.size()) {
+			bestSize = pack1.size() + pack2.size();
+			bestSoFar = Packing.concat(pack1.transform(subdivision.part1), pack2.transform(subdivision.part2));
+			improved();
+		}
+	}
+
+	// Replaces the solution by pack if it is better.
+	public void offer(Packing pack) {
+		if (bestSize < pack.size()) {
+			bestSize = pack.size();
 			bestSoFar = pack;
+			improved();
+		}
 	}
 
-	public Packing best() { return bestSoFar; }
+	public int size() { return bestSize; }
+
+	public int offered() { return offered; }
+
+	public int improvements() { return improvements; }
+
+	public Packing best() {
+		if (bestSoFar == null)
+			bestSoFar = (heuristic != null) ? heuristic.pack(ground) : ground.packGreedily(basicTile);
+		return bestSoFar;
+	}
 }
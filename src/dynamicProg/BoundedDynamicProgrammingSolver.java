@@ -0,0 +1,72 @@
+package dynamicProg;
+
+/* BoundedDynamicProgrammingSolver is a branch-and-bound variant of
+   DynamicProgrammingSolver.
+
+   A subdivision cannot give more tiles than the sum of the upper bounds of
+   its two parts. The subdivisions of an L-shape are sorted by decreasing
+   value of that bound before being accepted, and the search stops as soon
+   as the bound of the next subdivision is not larger than the best solution
+   found: the best subdivisions are likely tried first, and the remaining
+   ones are skipped without solving their parts. The L-shapes which are only
+   parts of skipped subdivisions are never solved. The subdivisions having
+   the same parts as an earlier one are dropped before being sorted (see
+   geometry.DistinctSubdivisions).
+
+   The optimal values are the same as with DynamicProgrammingSolver, but an
+   other optimal packing may be returned.
+ */
+
+import geometry.DistinctSubdivisions;
+import geometry.EllShape;
+import geometry.PackedSubdivision;
+import geometry.Tile;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class BoundedDynamicProgrammingSolver extends DynamicProgrammingSolver {
+
+	public BoundedDynamicProgrammingSolver(EllShape ground, Tile basicTile) {
+		super(ground, basicTile);
+	}
+
+	public BoundedDynamicProgrammingSolver(EllShape ground, Tile basicTile, MemoTable table) {
+		super(ground, basicTile, table);
+	}
+
+	private static class Candidate {
+		final PackedSubdivision subdivision;
+		final int bound;
+
+		Candidate(PackedSubdivision subdivision, int bound) {
+			this.subdivision = subdivision;
+			this.bound = bound;
+		}
+	}
+
+	// The subdivisions are enumerated as in DynamicProgrammingSolver.explore:
+	// only those which may beat the solution are copied into candidates.
+	@Override
+	void explore(EllShape ell, BestSolution solution) {
+		List<Candidate> candidates = new ArrayList<Candidate>();
+		DistinctSubdivisions distinct = new DistinctSubdivisions(sub -> {
+			int bound = EllShape.bestPackingUpperBound(sub.width1, sub.height1, sub.cornerX1, sub.cornerY1, basicTile,
+					raster)
+					+ EllShape.bestPackingUpperBound(sub.width2, sub.height2, sub.cornerX2, sub.cornerY2, basicTile,
+							raster);
+			if (bound > solution.size())
+				candidates.add(new Candidate(sub.copy(), bound));
+			return true;
+		}, raster);
+		ell.forEachSubdivision(distinct, raster);
+		if (metrics != null)
+			metrics.duplicatesRemoved(distinct.removed());
+		candidates.sort(Comparator.comparingInt((Candidate candidate) -> candidate.bound).reversed());
+		for (Candidate candidate : candidates) {
+			if (solution.isOptimal() || candidate.bound <= solution.size() || checkStop())
+				return;
+			solution.accept(candidate.subdivision);
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package dynamicProg;
+
+/* A Cancellation is shared between the caller of an anytime solve and the
+   solver (see DynamicProgrammingSolver.solve(Instant, Cancellation, ...)):
+   once cancel is called, from any thread, the solver stops its search and
+   returns the best packing found so far. */
+
+public class Cancellation {
+	private volatile boolean cancelled = false;
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
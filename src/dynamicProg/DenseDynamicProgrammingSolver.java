@@ -0,0 +1,426 @@
+package dynamicProg;
+
+/* DenseDynamicProgrammingSolver computes the same optimal values as
+   DynamicProgrammingSolver, but bottom-up and without recursion.
+
+   Every L-shape that can appear while subdividing the ground fits into the
+   bounding box of the ground, in one orientation or the other. So its
+   canonical form (width, height, cornerX, cornerY), with width <= height,
+   has its width and cornerX bounded by the short side of the ground, and
+   its height and cornerY by the long side. Only the lengths which are
+   raster points are stored (see below): each length is mapped to its rank
+   among the raster points, and a shape to a slot of a flat short array of
+   size shortPoints^2 * longPoints^2, holding its optimal number of tiles,
+   where shortPoints and longPoints are the numbers of raster points up to
+   the short and the long side. An elongated ground pays for the shapes it
+   can reach, not for those of a square ground.
+
+   The table is filled by increasing width + height, then by increasing
+   inside corner (lexicographically): each part of a subdivision either has
+   a smaller width + height, or has the same width and height with a corner
+   which is smaller on one coordinate and not larger on the other. So both
+   parts of every subdivision are known when a shape is computed.
+
+   Only canonical shapes whose lengths are raster points of the tile are
+   computed (see EllShape.isCanonical and EllShape.reduce): the value of a
+   shape is the value of the canonical form of its reduced shape, and only
+   the cuts at raster points are enumerated. Reducing a part never makes it
+   larger, so the order above still holds.
+
+   No packing is stored. Next to the value of each shape, an int records
+   the choice achieving it: no tile at all, one of the two greedy packings,
+   or the index of the winning subdivision in ell.forEachSubdivision. The packing
+   of the ground is rebuilt once at the end, by replaying those choices from
+   the ground down to the greedy packings, as a composed Packing sharing the
+   packing of every shape met several times.
+
+   The values and choices may be kept in a MemoStore instead of the heap,
+   indexed as in the store (see MemoStore.slot): the shapes already known by
+   the store are not computed again, and the new ones are added to it.
+
+   When the solver is retargeted to a larger ground, the table grows and
+   keeps the known values: the next fill only visits the widths and
+   heights which were out of the previous table.
+
+   A table on the heap takes BYTES_PER_SLOT bytes per slot: footprint gives
+   it before any solver is built, so that callers can choose another solver
+   for a ground whose table would not fit.
+ */
+
+import geometry.EllShape;
+import geometry.Packing;
+import geometry.PackedSubdivision;
+import geometry.RasterPoints;
+import geometry.Subdivision;
+import geometry.SubdivisionVisitor;
+import geometry.Tile;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+
+public class DenseDynamicProgrammingSolver extends DynamicProgrammingSolver {
+	private static final short UNKNOWN = -1;
+
+	// Choices recorded next to the values; subdivision #k is SUBDIVISION + k.
+	private static final int EMPTY = 0;
+	private static final int GREEDY_HORIZONTAL = 1;
+	private static final int GREEDY_VERTICAL = 2;
+	private static final int SUBDIVISION = 3;
+
+	// A short value and an int choice.
+	public static final int BYTES_PER_SLOT = 6;
+
+	// Bounds of the canonical shapes of the table.
+	private int shortMax;
+	private int longMax;
+	private final MemoStore store;
+	// rank[n] is the rank of the raster point n among the raster points;
+	// there are shortPoints of them up to shortMax, longPoints up to longMax.
+	private int[] rank;
+	private int shortPoints;
+	private int longPoints;
+	private boolean filled = false;
+	// Bounds of the shapes known to be all filled.
+	private int filledShort = 0;
+	private int filledLong = 0;
+	private short[] values;
+	private int[] choices;
+
+	// State of the search over the subdivisions of the shape being computed.
+	private int best;
+	private int bestChoice;
+	private int bound;
+	private int enumerated;
+	private int improvements;
+	private final SubdivisionVisitor improve = this::improve;
+
+	public DenseDynamicProgrammingSolver(EllShape ground, Tile basicTile) {
+		this(ground, basicTile, null);
+	}
+
+	public DenseDynamicProgrammingSolver(EllShape ground, Tile basicTile, MemoStore store) {
+		super(ground, basicTile);
+		this.shortMax = Math.min(ground.width, ground.height);
+		this.longMax = Math.max(ground.width, ground.height);
+		this.store = store;
+		check(ground);
+		ranks();
+	}
+
+	// The number of bytes of the table of a solver of ground on the heap
+	// (without MemoStore).
+	public static long footprint(EllShape ground, Tile basicTile) {
+		return BYTES_PER_SLOT * slots(RasterPoints.of(basicTile), Math.min(ground.width, ground.height),
+				Math.max(ground.width, ground.height));
+	}
+
+	// Whether a solver of ground can be built, with a table of at most budget
+	// bytes on the heap.
+	public static boolean fits(EllShape ground, Tile basicTile, long budget) {
+		RasterPoints raster = RasterPoints.of(basicTile);
+		long slots = slots(raster, Math.min(ground.width, ground.height), Math.max(ground.width, ground.height));
+		return slots <= Integer.MAX_VALUE && BYTES_PER_SLOT * slots <= budget
+				&& ground.getPackingUpperBound(basicTile) <= Short.MAX_VALUE
+				&& Math.max(ground.width, ground.height) <= EllShape.MAX_KEY_LENGTH;
+	}
+
+	private static long slots(RasterPoints raster, int shortMax, int longMax) {
+		long shortPoints = points(raster, shortMax), longPoints = points(raster, longMax);
+		return shortPoints * shortPoints * longPoints * longPoints;
+	}
+
+	// The number of raster points up to length.
+	private static int points(RasterPoints raster, int length) {
+		int count = 0;
+		for (int n = 0; n <= length; n++)
+			if (raster.contains(n))
+				count++;
+		return count;
+	}
+
+	private void check(EllShape ground) {
+		if ((store == null && slots(raster, shortMax, longMax) > Integer.MAX_VALUE)
+				|| ground.getPackingUpperBound(basicTile) > Short.MAX_VALUE
+				|| longMax > EllShape.MAX_KEY_LENGTH)
+			throw new IllegalArgumentException("ground too large for a dense table: " + ground.width + "x" + ground.height);
+		if (store != null && store.max < longMax)
+			throw new IllegalArgumentException("memo store too small for the ground: " + store.max);
+	}
+
+	private void ranks() {
+		rank = new int[longMax + 1];
+		int count = 0;
+		for (int n = 0; n <= longMax; n++)
+			rank[n] = raster.contains(n) ? count++ : -1;
+		shortPoints = points(raster, shortMax);
+		longPoints = count;
+	}
+
+	// A smaller ground is already in the table. For a larger one, the known
+	// values are copied into a larger table (a MemoStore must already be
+	// large enough, see MemoStore.open).
+	@Override
+	public void retarget(EllShape ground) {
+		int newShort = Math.max(shortMax, Math.min(ground.width, ground.height));
+		int newLong = Math.max(longMax, Math.max(ground.width, ground.height));
+		if (newShort > shortMax || newLong > longMax) {
+			int oldShort = shortMax, oldLong = longMax, oldShortPoints = shortPoints, oldLongPoints = longPoints;
+			shortMax = newShort;
+			longMax = newLong;
+			try {
+				check(ground);
+			} catch (IllegalArgumentException exc) {
+				shortMax = oldShort;
+				longMax = oldLong;
+				throw exc;
+			}
+			ranks();
+			if (values != null)
+				grow(oldShort, oldLong, oldShortPoints, oldLongPoints);
+			filled = false;
+		}
+		super.retarget(ground);
+	}
+
+	// Copies the values of the previous table, for the bounds oldShort and
+	// oldLong, into the current one. The ranks of the raster points do not
+	// depend on the bounds.
+	private void grow(int oldShort, int oldLong, int oldShortPoints, int oldLongPoints) {
+		short[] oldValues = values;
+		int[] oldChoices = choices;
+		allocate();
+		for (int width = 0; width <= oldShort; width++)
+			for (int height = width; height <= oldLong; height++)
+				for (int cornerX = 0; cornerX <= width; cornerX++)
+					for (int cornerY = 0; cornerY <= height; cornerY++) {
+						if (rank[width] < 0 || rank[height] < 0 || rank[cornerX] < 0 || rank[cornerY] < 0)
+							continue;
+						int oldSlot = ((rank[width] * oldLongPoints + rank[height]) * oldShortPoints + rank[cornerX])
+								* oldLongPoints + rank[cornerY];
+						if (oldValues[oldSlot] != UNKNOWN) {
+							int slot = index(width, height, cornerX, cornerY);
+							values[slot] = oldValues[oldSlot];
+							choices[slot] = oldChoices[oldSlot];
+						}
+					}
+	}
+
+	private void allocate() {
+		values = new short[shortPoints * shortPoints * longPoints * longPoints];
+		choices = new int[values.length];
+		Arrays.fill(values, UNKNOWN);
+	}
+
+	// Slot of a canonical shape whose lengths are raster points.
+	private int index(int width, int height, int cornerX, int cornerY) {
+		if (store != null)
+			return store.slot(width, height, cornerX, cornerY);
+		return ((rank[width] * longPoints + rank[height]) * shortPoints + rank[cornerX]) * longPoints + rank[cornerY];
+	}
+
+	// Index of the canonical form of ell.
+	private int index(EllShape ell) {
+		return ell.isCanonical() ? index(ell.width, ell.height, ell.insideCorner.x, ell.insideCorner.y)
+				: index(ell.height, ell.width, ell.insideCorner.y, ell.insideCorner.x);
+	}
+
+	private boolean inTable(EllShape ell) {
+		return Math.min(ell.width, ell.height) <= shortMax && Math.max(ell.width, ell.height) <= longMax;
+	}
+
+	// A shape is stored only under its normalised form (see EllShape), and
+	// if it is canonical and reduced.
+	private boolean isStored(int width, int height, int cornerX, int cornerY) {
+		boolean isNormalised = (cornerX == width && cornerY == height)
+				|| (0 < cornerX && cornerX < width && 0 < cornerY && cornerY < height);
+		return isNormalised && (width < height || (width == height && cornerX <= cornerY))
+				&& raster.contains(cornerX) && raster.contains(cornerY);
+	}
+
+	// Stops early if an anytime solve is stopped: a later call goes on with
+	// the shapes still unknown.
+	private void fill() {
+		if (store == null && values == null)
+			allocate();
+		record(index(0, 0, 0, 0), 0, EMPTY);
+		for (int sum = 2; sum <= shortMax + longMax; sum++) {
+			for (int width = Math.max(1, sum - longMax); width <= Math.min(shortMax, sum / 2); width++) {
+				if (checkStop())
+					return;
+				int height = sum - width;
+				if (!raster.contains(width) || !raster.contains(height))
+					continue;
+				if (width <= filledShort && height <= filledLong)
+					continue;
+				for (int cornerX = 1; cornerX <= width; cornerX++)
+					for (int cornerY = 1; cornerY <= height; cornerY++) {
+						if (!isStored(width, height, cornerX, cornerY))
+							continue;
+						int slot = index(width, height, cornerX, cornerY);
+						if (value(slot) == UNKNOWN)
+							compute(slot, new EllShape(width, height, cornerX, cornerY));
+						else if (metrics != null)
+							metrics.memoHit();
+					}
+			}
+		}
+		filled = true;
+		filledShort = shortMax;
+		filledLong = longMax;
+	}
+
+	private int value(int slot) {
+		return (store != null) ? store.value(slot) : values[slot];
+	}
+
+	// Value of a normalised shape, from the canonical form of its reduced
+	// shape (see EllShape.canonicalKey).
+	private int value(int width, int height, int cornerX, int cornerY) {
+		long key = EllShape.canonicalKey(width, height, cornerX, cornerY, raster);
+		if (key == 0)
+			return 0;
+		int value = value(index(EllShape.keyWidth(key), EllShape.keyHeight(key), EllShape.keyCornerX(key),
+				EllShape.keyCornerY(key)));
+		assert value != UNKNOWN;
+		return value;
+	}
+
+	private int choice(int slot) {
+		return (store != null) ? store.choice(slot) : choices[slot];
+	}
+
+	private void record(int slot, int value, int choice) {
+		if (store != null) {
+			store.put(slot, value, choice);
+		} else {
+			values[slot] = (short) value;
+			choices[slot] = choice;
+		}
+	}
+
+	private void compute(int slot, EllShape ell) {
+		StateEvent event = FlightRecording.isRecording() ? new StateEvent() : null;
+		if (event != null)
+			event.begin();
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		int horizontal = ell.countGreedilyHorizontally(basicTile);
+		int vertical = ell.countGreedilyVertically(basicTile);
+		best = Math.max(horizontal, vertical);
+		bestChoice = (best == 0) ? EMPTY : (horizontal >= vertical) ? GREEDY_HORIZONTAL : GREEDY_VERTICAL;
+		bound = ell.getBestPackingUpperBound(basicTile);
+		enumerated = improvements = 0;
+		if (best > 0 && best < bound)
+			ell.forEachSubdivision(improve, raster);
+		record(slot, best, bestChoice);
+		if (metrics != null) {
+			metrics.memoMiss();
+			metrics.recordState(ell, System.nanoTime() - start, enumerated, improvements, best == bound);
+		}
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit())
+				commit(event, ell, enumerated, best);
+		}
+	}
+
+	private boolean improve(PackedSubdivision sub) {
+		int value = value(sub.width1, sub.height1, sub.cornerX1, sub.cornerY1)
+				+ value(sub.width2, sub.height2, sub.cornerX2, sub.cornerY2);
+		enumerated++;
+		if (value > best) {
+			best = value;
+			bestChoice = SUBDIVISION + sub.index;
+			improvements++;
+		}
+		return best < bound;
+	}
+
+	// Anytime solve: the packing of the ground is only known once the whole
+	// table is filled. When stopped before, the result is the initial packing.
+	@Override
+	void explore(EllShape ell, BestSolution solution) {
+		if (!filled)
+			fill();
+		if (filled)
+			solution.offer(rebuild(ell));
+	}
+
+	@Override
+	public Packing retrieveOptimalSolution(EllShape ell) {
+		if (!inTable(ell))
+			throw new IllegalArgumentException("shape out of the table: " + ell.width + "x" + ell.height);
+		if (!filled)
+			fill();
+		return rebuild(ell);
+	}
+
+	// The optimal number of tiles of ell, without building its packing.
+	public int count(EllShape ell) {
+		if (!inTable(ell))
+			throw new IllegalArgumentException("shape out of the table: " + ell.width + "x" + ell.height);
+		if (!filled)
+			fill();
+		return value(ell.width, ell.height, ell.insideCorner.x, ell.insideCorner.y);
+	}
+
+	private Subdivision subdivision(EllShape ell, int index) {
+		Subdivision[] found = new Subdivision[1];
+		ell.forEachSubdivision(sub -> {
+			if (sub.index < index)
+				return true;
+			found[0] = sub.toSubdivision();
+			return false;
+		}, raster);
+		return found[0];
+	}
+
+	private EllShape canonical(EllShape ell) {
+		ell = ell.reduce(raster);
+		return ell.isCanonical() ? ell : ell.transpose();
+	}
+
+	// The packing of the reduced shape of ell fits into ell as it is.
+	private Packing oriented(Packing pack, EllShape ell) {
+		return ell.reduce(raster).isCanonical() ? pack : pack.transpose();
+	}
+
+	// Replays the choices from ell down to the greedy packings. Each canonical
+	// shape is rebuilt once, after both parts of its subdivision: the packing
+	// of a shape met several times is shared (see Packing).
+	private Packing rebuild(EllShape ell) {
+		HashMap<EllShape, Packing> built = new HashMap<EllShape, Packing>();
+		HashMap<EllShape, Subdivision> subdivisions = new HashMap<EllShape, Subdivision>();
+		Deque<EllShape> stack = new ArrayDeque<EllShape>();
+		stack.push(canonical(ell));
+		while (!stack.isEmpty()) {
+			EllShape shape = stack.peek();
+			if (built.containsKey(shape)) {
+				stack.pop();
+				continue;
+			}
+			int choice = choice(index(shape));
+			if (choice >= SUBDIVISION) {
+				Subdivision sub = subdivisions.computeIfAbsent(shape, key -> subdivision(key, choice - SUBDIVISION));
+				Packing pack1 = built.get(canonical(sub.part1.shape));
+				Packing pack2 = built.get(canonical(sub.part2.shape));
+				if (pack1 == null || pack2 == null) {
+					if (pack1 == null)
+						stack.push(canonical(sub.part1.shape));
+					if (pack2 == null)
+						stack.push(canonical(sub.part2.shape));
+					continue;
+				}
+				built.put(shape, Packing.concat(oriented(pack1, sub.part1.shape).transform(sub.part1),
+						oriented(pack2, sub.part2.shape).transform(sub.part2)));
+			} else if (choice == EMPTY) {
+				built.put(shape, new Packing());
+			} else {
+				built.put(shape, (choice == GREEDY_HORIZONTAL) ? shape.packGreedilyHorizontally(basicTile)
+						: shape.packGreedilyVertically(basicTile));
+			}
+			stack.pop();
+		}
+		return oriented(built.get(canonical(ell)), ell);
+	}
+}
@@ -11,41 +11,223 @@ package dynamicProg;
 
 // Ralis par Idriss Lopes Sanches et Arnaud Soulier
 
+import geometry.BlockHeuristic;
+import geometry.DistinctSubdivisions;
 import geometry.EllShape;
 import geometry.Packing;
-import geometry.Subdivision;
+import geometry.RasterPoints;
 import geometry.Tile;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Consumer;
 
 public class DynamicProgrammingSolver {
-	public final EllShape ground;
+	private EllShape ground;
 	public final Tile basicTile;
-	private HashMap<EllShape, Packing> table;
+	private final MemoTable table;
+	final RasterPoints raster;
+	private BlockHeuristic heuristic = null;
+	SolverMetrics metrics = null;
+
+	// State of an anytime solve. Once stopped, the searches unwind, and the
+	// packings completed from then on are not memoised, since they may not
+	// be optimal. The clock and the cancellation are only polled every
+	// POLL_PERIOD calls of checkStop.
+	private static final int POLL_PERIOD = 256;
+	// Half of the range of System.nanoTime, about 146 years.
+	private static final Duration FOREVER = Duration.ofNanos(Long.MAX_VALUE / 2);
+	private volatile boolean stopped = false;
+	private boolean hasDeadline = false;
+	private long deadline;
+	private Cancellation cancellation = null;
+	private int polls = 0;
 
 	public DynamicProgrammingSolver(EllShape ground, Tile basicTile) {
+		this(ground, basicTile, new MemoTable(basicTile));
+	}
+
+	// The memoised packings only depend on the tile, so a table may be shared
+	// by the solvers of several grounds (see SolverCache).
+	public DynamicProgrammingSolver(EllShape ground, Tile basicTile, MemoTable table) {
+		if (!table.isFor(basicTile))
+			throw new IllegalArgumentException("memo table of another tile");
 		this.ground = ground;
 		this.basicTile = basicTile;
-		this.table = new HashMap<EllShape, Packing>();
+		this.table = table;
+		this.raster = RasterPoints.of(basicTile);
+	}
+
+	public EllShape getGround() {
+		return ground;
+	}
+
+	// Solves ground from now on, keeping the memoised shapes: a next solve
+	// only computes the shapes which were not needed by the previous grounds,
+	// as when a ground grows by one unit.
+	public void retarget(EllShape ground) {
+		this.ground = ground;
+	}
+
+	// Starts the search on every shape from the better of the greedy packing
+	// and the packing of heuristic, instead of the greedy packing alone: more
+	// shapes reach their upper bound before enumerating their subdivisions.
+	public void setInitialHeuristic(BlockHeuristic heuristic) {
+		if (heuristic != null && !heuristic.isFor(basicTile))
+			throw new IllegalArgumentException("heuristic of another tile");
+		this.heuristic = heuristic;
 	}
 
-	private Packing computeOptimalSolution(EllShape ell) {
+	BlockHeuristic initialHeuristic() {
+		return heuristic;
+	}
+
+	// Counts the work of the solver into metrics (none if null). Whether or
+	// not metrics are counted, the states lasting long are recorded as
+	// Flight Recorder events while a recording runs (see StateEvent).
+	public void setMetrics(SolverMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public SolverMetrics getMetrics() {
+		return metrics;
+	}
+
+	void commit(StateEvent event, EllShape ell, int subdivisions, int tiles) {
+		event.width = ell.width;
+		event.height = ell.height;
+		event.cornerX = ell.insideCorner.x;
+		event.cornerY = ell.insideCorner.y;
+		event.tileWidth = basicTile.getWidth();
+		event.tileHeight = basicTile.getHeight();
+		event.subdivisions = subdivisions;
+		event.tiles = tiles;
+		event.commit();
+	}
+
+	// Computes the optimal packing of ell without looking at the memo, nor
+	// storing the result: this is left to retrieveOptimalSolution.
+	protected Packing computeOptimalSolution(EllShape ell) {
+		StateEvent event = FlightRecording.isRecording() ? new StateEvent() : null;
+		if (event != null)
+			event.begin();
+		long start = (metrics != null) ? System.nanoTime() : 0;
 		BestSolution solution = new BestSolution(ell, basicTile, this);
-		
-		if (solution.isValid() && !solution.isOptimal()) {
-			Iterator<Subdivision> iter = ell.subdivisions().iterator();
-			while (iter.hasNext() && !solution.isOptimal()) {
-				Subdivision sub = iter.next();
-				solution.accept(sub);
-			}
+
+		if (solution.isValid() && !solution.isOptimal() && !checkStop())
+			explore(ell, solution);
+		if (metrics != null)
+			metrics.recordState(ell, System.nanoTime() - start, solution.offered(), solution.improvements(),
+					solution.isOptimal());
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit())
+				commit(event, ell, solution.offered(), solution.size());
 		}
-		table.put(ell, solution.best());
 //		System.out.println("add : " + ell.width + " " + ell.height + " " + ell.insideCorner.x + " " + ell.insideCorner.y);
 		return solution.best();
 	}
 
+	// Submits the distinct subdivisions of ell to solution, until it is
+	// optimal or the search is stopped.
+	void explore(EllShape ell, BestSolution solution) {
+		DistinctSubdivisions distinct = new DistinctSubdivisions(sub -> {
+			if (checkStop())
+				return false;
+			solution.accept(sub);
+			return !solution.isOptimal();
+		}, raster);
+		ell.forEachSubdivision(distinct, raster);
+		if (metrics != null)
+			metrics.duplicatesRemoved(distinct.removed());
+	}
+
+	// Only canonical L-shapes with their lengths at raster points are stored:
+	// the packing of the other ones is the packing of their reduced form (see
+	// EllShape.reduce), transposed when they are not canonical.
 	public Packing retrieveOptimalSolution(EllShape ell) {
-		return (table.containsKey(ell)) ? table.get(ell) : computeOptimalSolution(ell);
+		EllShape reduced = ell.reduce(raster);
+		if (reduced != ell)
+			return retrieveOptimalSolution(reduced);
+		if (!ell.isCanonical())
+			return retrieveOptimalSolution(ell.transpose()).transpose();
+		Packing pack = table.get(ell);
+		if (metrics != null) {
+			if (pack != null)
+				metrics.memoHit();
+			else
+				metrics.memoMiss();
+		}
+		if (pack == null) {
+			pack = computeOptimalSolution(ell);
+			if (!isStopped())
+				pack = table.put(ell, pack);
+		}
+		return pack;
+	}
+
+	// Hint that the optimal packing of ell will be needed soon. The sequential
+	// solver has nothing to anticipate, the parallel one starts solving it.
+	protected void prefetch(EllShape ell) {
+	}
+
+	// True once the current anytime solve has passed its deadline or been
+	// cancelled. Races between threads on polls only delay the polling.
+	boolean checkStop() {
+		if (stopped)
+			return true;
+		if (++polls % POLL_PERIOD != 0)
+			return false;
+		if ((hasDeadline && System.nanoTime() - deadline >= 0)
+				|| (cancellation != null && cancellation.isCancelled()))
+			stopped = true;
+		return stopped;
+	}
+
+	boolean isStopped() {
+		return stopped;
+	}
+
+	// Runs the search of an anytime solve, which may use the solver's own
+	// threads (see ParallelDynamicProgrammingSolver).
+	protected void runSearch(Runnable search) {
+		search.run();
+	}
+
+	/* Anytime solve: searches the optimal packing of the ground until the
+	   deadline (if not null) or the cancellation (if not null), and returns
+	   the best packing found. onImprovement (if not null) is called with the
+	   initial packing of the ground, on the calling thread, and then with
+	   every better packing while the search goes on, on the thread running
+	   the search: the calling thread, or a worker of the pool of a
+	   ParallelDynamicProgrammingSolver (see runSearch). Only the packings of
+	   the shapes completed before the stop are memoised, so the solver may
+	   be used again, and finishes the search where it stopped. */
+	public AnytimeResult solve(Instant deadline, Cancellation cancellation, Consumer<AnytimeResult> onImprovement) {
+		int upperBound = ground.getBestPackingUpperBound(basicTile);
+		// A deadline in the past stops at once. One too far to be counted in
+		// nanoseconds (such as Instant.MAX) is no deadline.
+		Duration remaining = (deadline != null) ? Duration.between(Instant.now(), deadline) : null;
+		this.hasDeadline = remaining != null && remaining.compareTo(FOREVER) < 0;
+		if (hasDeadline)
+			this.deadline = System.nanoTime() + (remaining.isNegative() ? 0 : remaining.toNanos());
+		this.cancellation = cancellation;
+		this.polls = POLL_PERIOD - 1; // the first check polls
+		try {
+			BestSolution solution = new BestSolution(ground, basicTile, this);
+			if (onImprovement != null) {
+				onImprovement.accept(new AnytimeResult(solution.best(), upperBound, false));
+				solution.onImprovement(() -> onImprovement.accept(new AnytimeResult(solution.best(), upperBound, false)));
+			}
+			runSearch(() -> {
+				if (solution.isValid() && !solution.isOptimal() && !checkStop())
+					explore(ground, solution);
+			});
+			return new AnytimeResult(solution.best(), upperBound, !isStopped());
+		} finally {
+			this.stopped = false;
+			this.hasDeadline = false;
+			this.cancellation = null;
+		}
 	}
 
 	public Packing solve() {
@@ -62,6 +244,8 @@ public class DynamicProgrammingSolver {
 //					tile.getWidth() + ", " + tile.getHeight() + " : " + tile.getCornerX() + ", " + tile.getCornerY());
 //		}
 		System.out.println("Runtime : " + (System.nanoTime() - startTime) / 1000000000.0 + " second(s).");
+		if (metrics != null)
+			System.out.print(metrics);
 		return pack;
 	}
 }
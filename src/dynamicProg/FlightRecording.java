@@ -0,0 +1,53 @@
+package dynamicProg;
+
+/* FlightRecording tells the solvers whether a Flight Recorder recording is
+   running, so that they only build a StateEvent then. Creating the first
+   event of a JVM initialises Flight Recorder, which costs hundreds of
+   milliseconds: without a recording, the solvers must not touch it.
+
+   Until Flight Recorder is initialised (by -XX:StartFlightRecording, jcmd
+   or the jdk.jfr API), isRecording only reads a volatile flag of
+   FlightRecorder, which loads none of its internals. Once it is, a listener
+   keeps track of the running recordings. */
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+final class FlightRecording {
+	private static volatile boolean listening = false;
+	private static volatile boolean recording = false;
+
+	private FlightRecording() {
+	}
+
+	static boolean isRecording() {
+		if (listening)
+			return recording;
+		if (!FlightRecorder.isInitialized())
+			return false;
+		listen();
+		return recording;
+	}
+
+	private static synchronized void listen() {
+		if (listening)
+			return;
+		FlightRecorder.addListener(new FlightRecorderListener() {
+			@Override
+			public void recordingStateChanged(Recording changed) {
+				update();
+			}
+		});
+		listening = true;
+		update();
+	}
+
+	private static void update() {
+		boolean running = false;
+		for (Recording r : FlightRecorder.getFlightRecorder().getRecordings())
+			running |= r.getState() == RecordingState.RUNNING;
+		recording = running;
+	}
+}
@@ -0,0 +1,221 @@
+package dynamicProg;
+
+/* A MemoStore keeps on disk the optimal values computed for one tile, so
+   that they can be reused by later runs of DenseDynamicProgrammingSolver.
+
+   The store of a tile is a single file of a directory, which is memory
+   mapped: opening it does not read it, and values are read directly from
+   the mapping. The file starts with a header (magic, version, tile sides,
+   dimension bound max) followed by one slot per L-shape whose width and
+   height are at most max, indexed by slot (by the lengths themselves:
+   the store is shared by grounds of any proportions). A
+   slot holds the value plus one (zero meaning unknown) and the choice
+   recorded by the solver. The choice is written before the value, so a
+   slot is never seen half written.
+
+   Values are written into the mapping as soon as they are computed. The
+   mapping is forced to the disk every FORCE_PERIOD new values and on
+   close, so that a crash loses at most the last few values. Since every run
+   adds to it, a long solve which is interrupted resumes where it stopped.
+
+   The tiles (a,b) and (b,a) have the same optimal values and choices, and
+   share the same file. When a larger ground is solved, the file is
+   replaced by a larger one, into which the known values are copied.
+
+   A store may be shared by several processes. They coordinate through a
+   lock file next to the store: an open store holds a shared lock on it
+   until it is closed, and the file of the store is only created or
+   replaced under an exclusive lock. So a process needing a larger store
+   waits until the others have closed theirs, and no process ever writes
+   into a file which has been replaced. Within one process, a store must
+   not be opened again before it is closed (the locks are held by the
+   process, see FileLock).
+ */
+
+import geometry.Tile;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class MemoStore implements AutoCloseable {
+	private static final int MAGIC = 0x44504d53;
+	private static final int VERSION = 2;
+	private static final int HEADER = 32;
+	private static final int SLOT = 8;
+	private static final int FORCE_PERIOD = 1024;
+
+	public final int max;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	// The channel of the lock file, holding a shared lock; null for a store
+	// only used while the exclusive lock is held.
+	private FileChannel lock = null;
+	private int unforced = 0;
+
+	private MemoStore(FileChannel channel, MappedByteBuffer buffer, int max) {
+		this.channel = channel;
+		this.buffer = buffer;
+		this.max = max;
+	}
+
+	private static Path file(Path directory, int side1, int side2) {
+		return directory.resolve("tile-" + side1 + "x" + side2 + ".memo");
+	}
+
+	private static Path lockFile(Path directory, int side1, int side2) {
+		return directory.resolve("tile-" + side1 + "x" + side2 + ".lock");
+	}
+
+	private static long fileSize(int max) {
+		long slots = (long) (max + 1) * (max + 1) * (max + 1) * (max + 1);
+		return HEADER + slots * SLOT;
+	}
+
+	// Opens (or creates) the store of basicTile in directory, able to hold
+	// every shape whose width and height are at most max. Waits for the other
+	// processes using the store if it has to be enlarged.
+	public static MemoStore open(Path directory, Tile basicTile, int max) throws IOException {
+		int side1 = Math.min(basicTile.getWidth(), basicTile.getHeight());
+		int side2 = Math.max(basicTile.getWidth(), basicTile.getHeight());
+		if (fileSize(max) > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("shapes too large for a memo store: " + max);
+		Files.createDirectories(directory);
+		Path path = file(directory, side1, side2);
+		FileChannel lockChannel = FileChannel.open(lockFile(directory, side1, side2), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		boolean opened = false;
+		try {
+			// Another process may enlarge the store between the two locks: the
+			// file is checked again under each of them.
+			for (;;) {
+				FileLock shared = lock(lockChannel, true, path);
+				if (Files.exists(path)) {
+					MemoStore store = map(path, side1, side2);
+					if (store.max >= max) {
+						store.lock = lockChannel;
+						opened = true;
+						return store;
+					}
+					store.close();
+				}
+				shared.release();
+				FileLock exclusive = lock(lockChannel, false, path);
+				try {
+					enlarge(directory, path, side1, side2, max);
+				} finally {
+					exclusive.release();
+				}
+			}
+		} finally {
+			if (!opened)
+				lockChannel.close();
+		}
+	}
+
+	private static FileLock lock(FileChannel lockChannel, boolean shared, Path path) throws IOException {
+		try {
+			return lockChannel.lock(0, Long.MAX_VALUE, shared);
+		} catch (OverlappingFileLockException exc) {
+			throw new IOException("memo store already open in this process: " + path, exc);
+		}
+	}
+
+	// Creates the file of the store, or replaces it by a larger one, unless
+	// another process did it first. The exclusive lock must be held.
+	private static void enlarge(Path directory, Path path, int side1, int side2, int max) throws IOException {
+		Path larger = Files.createTempFile(directory, "tile-", ".memo");
+		try {
+			try (MemoStore copy = create(larger, side1, side2, max)) {
+				if (Files.exists(path)) {
+					MemoStore existing = map(path, side1, side2);
+					try {
+						if (existing.max >= max)
+							return;
+						existing.copyTo(copy);
+					} finally {
+						existing.close();
+					}
+				}
+			}
+			Files.move(larger, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(larger);
+		}
+	}
+
+	private static MemoStore create(Path path, int side1, int side2, int max) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		channel.truncate(0);
+		channel.write(ByteBuffer.wrap(new byte[1]), fileSize(max) - 1);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(max));
+		buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, side1).putInt(12, side2).putInt(16, max);
+		return new MemoStore(channel, buffer, max);
+	}
+
+	private static MemoStore map(Path path, int side1, int side2) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		channel.read(header, 0);
+		int max = header.getInt(16);
+		if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != side1
+				|| header.getInt(12) != side2 || channel.size() != fileSize(max)) {
+			channel.close();
+			throw new IOException("not a memo store for tile " + side1 + "x" + side2 + ": " + path);
+		}
+		return new MemoStore(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(max)), max);
+	}
+
+	public int slot(int width, int height, int cornerX, int cornerY) {
+		return ((width * (max + 1) + height) * (max + 1) + cornerX) * (max + 1) + cornerY;
+	}
+
+	// The value stored for slot, or -1 if it is unknown.
+	public int value(int slot) {
+		return buffer.getInt(HEADER + slot * SLOT) - 1;
+	}
+
+	public int choice(int slot) {
+		return buffer.getInt(HEADER + slot * SLOT + 4);
+	}
+
+	public void put(int slot, int value, int choice) {
+		buffer.putInt(HEADER + slot * SLOT + 4, choice);
+		buffer.putInt(HEADER + slot * SLOT, value + 1);
+		if (++unforced >= FORCE_PERIOD)
+			flush();
+	}
+
+	public void flush() {
+		buffer.force();
+		unforced = 0;
+	}
+
+	private void copyTo(MemoStore other) {
+		for (int width = 0; width <= max; width++)
+			for (int height = 0; height <= max; height++)
+				for (int cornerX = 0; cornerX <= max; cornerX++)
+					for (int cornerY = 0; cornerY <= max; cornerY++) {
+						int slot = slot(width, height, cornerX, cornerY);
+						if (value(slot) >= 0)
+							other.put(other.slot(width, height, cornerX, cornerY), value(slot), choice(slot));
+					}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+			channel.close();
+		} finally {
+			if (lock != null)
+				lock.close();
+		}
+	}
+}
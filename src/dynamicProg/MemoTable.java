@@ -0,0 +1,50 @@
+package dynamicProg;
+
+/* A MemoTable memoises the optimal packings of L-shapes for one tile.
+   Those packings do not depend on the ground being solved, so the same table
+   can be used by the solvers of every ground with that tile. The tiles
+   (a,b) and (b,a) have the same optimal packings (the greedy packings put
+   the longest side horizontally, or vertically, whatever the orientation of
+   the tile), hence they accept the same tables.
+
+   A MemoTable is not thread-safe. It keeps every packing on the heap, see
+   SpillingMemoTable for a table with a memory budget.
+ */
+
+import geometry.EllShape;
+import geometry.Packing;
+import geometry.Tile;
+import java.util.HashMap;
+
+public class MemoTable {
+	private final int shortSide;
+	private final int longSide;
+	private final HashMap<EllShape, Packing> table;
+
+	public MemoTable(Tile basicTile) {
+		this.shortSide = Math.min(basicTile.getWidth(), basicTile.getHeight());
+		this.longSide = Math.max(basicTile.getWidth(), basicTile.getHeight());
+		this.table = new HashMap<EllShape, Packing>();
+	}
+
+	public boolean isFor(Tile basicTile) {
+		return Math.min(basicTile.getWidth(), basicTile.getHeight()) == shortSide
+				&& Math.max(basicTile.getWidth(), basicTile.getHeight()) == longSide;
+	}
+
+	// The optimal packing of ell, or null if it is not known yet.
+	public Packing get(EllShape ell) {
+		return table.get(ell);
+	}
+
+	// Returns the packing to use instead of pack from now on, which has the
+	// same tiles: pack itself, unless the table keeps it in another form.
+	public Packing put(EllShape ell, Packing pack) {
+		table.put(ell, pack);
+		return pack;
+	}
+
+	public int size() {
+		return table.size();
+	}
+}
@@ -0,0 +1,183 @@
+package dynamicProg;
+
+/* ParallelDynamicProgrammingSolver runs the same dynamic program as
+   DynamicProgrammingSolver, on a fork/join pool.
+
+   Each L-shape is solved by exactly one SolveTask. The task is registered
+   in a concurrent table before it starts, so a thread needing a shape that
+   is already in flight joins the existing task instead of solving the shape
+   a second time. When a subdivision is evaluated, the task of its second
+   part is forked (see prefetch), and may be solved by another worker while
+   the current thread solves the first part.
+
+   As in the sequential solver, only reduced canonical L-shapes are solved.
+
+   A solver built with a MemoTable (shared by a SolverCache, or a
+   SpillingMemoTable) looks a shape up in it before starting a task, and
+   puts the packing of every completed task into it, the task being dropped
+   from the concurrent table then. The MemoTable is not thread-safe: the
+   solver only uses it under its lock, and it must not be used by another
+   thread meanwhile. Without MemoTable, the tasks themselves memoise the
+   packings.
+
+   Every shape is still computed from the optimal packings of its parts,
+   enumerated by forEachSubdivision at raster points and filtered by
+   DistinctSubdivisions (see DynamicProgrammingSolver.explore), so the
+   results are the same as those of the sequential solver.
+
+   A solver built with a parallelism owns its pool, which close shuts down.
+   A solver built on a pool of the caller leaves it running: solvers sharing
+   a pool do not start threads of their own, but the end of a search waits
+   for the pool to be quiescent, hence for the tasks of the other solvers.
+ */
+
+import geometry.EllShape;
+import geometry.Packing;
+import geometry.Tile;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+public class ParallelDynamicProgrammingSolver extends DynamicProgrammingSolver implements AutoCloseable {
+	private final ConcurrentHashMap<EllShape, SolveTask> tasks;
+	// The table given to the constructor, or null.
+	private final MemoTable table;
+	private final ForkJoinPool pool;
+	private final boolean ownsPool;
+
+	public ParallelDynamicProgrammingSolver(EllShape ground, Tile basicTile) {
+		this(ground, basicTile, Runtime.getRuntime().availableProcessors());
+	}
+
+	// The pool is private to the solver: callers outside of it only wait for
+	// the result, they never run tasks themselves (as they may on the common
+	// pool), which keeps every task on a worker thread.
+	public ParallelDynamicProgrammingSolver(EllShape ground, Tile basicTile, int parallelism) {
+		this(ground, basicTile, null, new ForkJoinPool(parallelism), true);
+	}
+
+	// The pool is the caller's, and is not shut down by close.
+	public ParallelDynamicProgrammingSolver(EllShape ground, Tile basicTile, ForkJoinPool pool) {
+		this(ground, basicTile, null, pool, false);
+	}
+
+	public ParallelDynamicProgrammingSolver(EllShape ground, Tile basicTile, MemoTable table, int parallelism) {
+		this(ground, basicTile, table, new ForkJoinPool(parallelism), true);
+	}
+
+	public ParallelDynamicProgrammingSolver(EllShape ground, Tile basicTile, MemoTable table, ForkJoinPool pool) {
+		this(ground, basicTile, table, pool, false);
+	}
+
+	private ParallelDynamicProgrammingSolver(EllShape ground, Tile basicTile, MemoTable table, ForkJoinPool pool,
+			boolean ownsPool) {
+		super(ground, basicTile, (table != null) ? table : new MemoTable(basicTile));
+		this.tasks = new ConcurrentHashMap<EllShape, SolveTask>();
+		this.table = table;
+		this.pool = pool;
+		this.ownsPool = ownsPool;
+	}
+
+	// Shuts the pool down if the solver owns it. The solver must not be used
+	// afterwards.
+	@Override
+	public void close() {
+		if (ownsPool)
+			pool.shutdown();
+	}
+
+	@Override
+	public Packing retrieveOptimalSolution(EllShape ell) {
+		if (ForkJoinTask.getPool() != pool)
+			return pool.invoke(ForkJoinTask.adapt(() -> retrieveOptimalSolution(ell)));
+		EllShape reduced = ell.reduce(raster);
+		if (reduced != ell)
+			return retrieveOptimalSolution(reduced);
+		if (!ell.isCanonical())
+			return retrieveOptimalSolution(ell.transpose()).transpose();
+		SolveTask task = tasks.get(ell);
+		if (task == null) {
+			Packing pack = memoised(ell);
+			if (pack != null) {
+				if (metrics != null)
+					metrics.memoHit();
+				return pack;
+			}
+			// Another task may have completed the shape since the lookups:
+			// the new task looks at the table again before computing it.
+			task = new SolveTask(ell);
+			SolveTask running = tasks.putIfAbsent(ell, task);
+			if (running == null)
+				return task.invoke();
+			task = running;
+		}
+		if (metrics != null)
+			metrics.memoHit();
+		return task.join();
+	}
+
+	@Override
+	protected void prefetch(EllShape ell) {
+		ell = ell.reduce(raster);
+		if (!ell.isCanonical())
+			ell = ell.transpose();
+		if (tasks.containsKey(ell) || memoised(ell) != null)
+			return;
+		SolveTask task = new SolveTask(ell);
+		if (tasks.putIfAbsent(ell, task) == null)
+			task.fork();
+	}
+
+	private Packing memoised(EllShape ell) {
+		if (table == null)
+			return null;
+		synchronized (table) {
+			return table.get(ell);
+		}
+	}
+
+	// The search runs on the pool. When it is stopped, the forked tasks still
+	// running are waited for before the stop is cleared: each of them returns
+	// at once, and is not kept in the table.
+	@Override
+	protected void runSearch(Runnable search) {
+		pool.invoke(ForkJoinTask.adapt(search));
+		pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	@SuppressWarnings("serial")
+	private class SolveTask extends RecursiveTask<Packing> {
+		private final EllShape ell;
+
+		SolveTask(EllShape ell) {
+			this.ell = ell;
+		}
+
+		// A task is dropped once its packing is in the table: a task
+		// registered afterwards for the same shape finds it there.
+		@Override
+		protected Packing compute() {
+			Packing pack = memoised(ell);
+			if (pack != null) {
+				if (metrics != null)
+					metrics.memoHit();
+				tasks.remove(ell, this);
+				return pack;
+			}
+			if (metrics != null)
+				metrics.memoMiss();
+			pack = computeOptimalSolution(ell);
+			if (isStopped()) {
+				tasks.remove(ell, this);
+			} else if (table != null) {
+				synchronized (table) {
+					pack = table.put(ell, pack);
+				}
+				tasks.remove(ell, this);
+			}
+			return pack;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package dynamicProg;
+
+/* A SolverCache solves many instances in a row, sharing work between them:
+
+   - all the instances using the same tile, in either orientation, share
+     one MemoTable, so common L-shapes are solved only once,
+   - an instance which was already solved, or whose transposition (width and
+     height exchanged) was already solved, is answered from the earlier
+     result, transposed if needed.
+ */
+
+import geometry.EllShape;
+import geometry.Packing;
+import geometry.Tile;
+import java.util.HashMap;
+
+public class SolverCache {
+	// The MemoTable of a tile, and the packings of the grounds solved with
+	// it, by key (see EllShape.key).
+	private static class TileCache {
+		final MemoTable table;
+		final HashMap<Long, Packing> solved = new HashMap<Long, Packing>();
+
+		TileCache(Tile basicTile) {
+			this.table = new MemoTable(basicTile);
+		}
+	}
+
+	private final HashMap<Long, TileCache> caches;
+
+	public SolverCache() {
+		this.caches = new HashMap<Long, TileCache>();
+	}
+
+	private TileCache cacheFor(Tile basicTile) {
+		int shortSide = Math.min(basicTile.getWidth(), basicTile.getHeight());
+		int longSide = Math.max(basicTile.getWidth(), basicTile.getHeight());
+		return caches.computeIfAbsent(((long) shortSide << 32) | longSide, key -> new TileCache(basicTile));
+	}
+
+	public MemoTable tableFor(Tile basicTile) {
+		return cacheFor(basicTile).table;
+	}
+
+	// A ground whose sides do not fit into a key is solved every time.
+	public Packing solve(EllShape ground, Tile basicTile) {
+		TileCache cache = cacheFor(basicTile);
+		if (Math.max(ground.width, ground.height) > EllShape.MAX_KEY_LENGTH)
+			return new DynamicProgrammingSolver(ground, basicTile, cache.table).solve();
+		long key = ground.key();
+		Packing pack = cache.solved.get(key);
+		if (pack != null)
+			return pack;
+		Packing transposed = cache.solved.get(
+				EllShape.key(ground.height, ground.width, ground.insideCorner.y, ground.insideCorner.x));
+		pack = (transposed != null) ? transposed.transpose()
+				: new DynamicProgrammingSolver(ground, basicTile, cache.table).solve();
+		cache.solved.put(key, pack);
+		return pack;
+	}
+}
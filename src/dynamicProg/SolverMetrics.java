@@ -0,0 +1,120 @@
+package dynamicProg;
+
+/* SolverMetrics counts where a solver spends its work (see
+   DynamicProgrammingSolver.setMetrics). The counters are LongAdders, so
+   one instance may be shared by the threads of a parallel solver, or by
+   several solvers.
+
+   - memo hits and misses: lookups of an L-shape in the memo (for the
+     dense solver, shapes found in its MemoStore or computed),
+   - states: L-shapes computed,
+   - subdivisions enumerated (submitted to a BestSolution) and accepted
+     (improving the best solution of their L-shape),
+   - duplicates: subdivisions dropped before being enumerated, having the
+     same parts as an earlier one (see geometry.DistinctSubdivisions),
+   - early exits: states whose search stopped at their upper bound,
+   - initial wins: states whose best packing is the initial one (the
+     greedy packing, or the block heuristic),
+   - time per state-size bucket: a state of area a falls into bucket
+     floor(log2(a)). The time of a state includes the time spent solving
+     its parts for the first time.
+
+   A state is counted once its computation ends. */
+
+import geometry.EllShape;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SolverMetrics {
+	public static final int BUCKETS = 32;
+
+	private final LongAdder memoHits = new LongAdder();
+	private final LongAdder memoMisses = new LongAdder();
+	private final LongAdder states = new LongAdder();
+	private final LongAdder enumerated = new LongAdder();
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder duplicates = new LongAdder();
+	private final LongAdder earlyExits = new LongAdder();
+	private final LongAdder initialWins = new LongAdder();
+	private final LongAdder[] bucketStates = new LongAdder[BUCKETS];
+	private final LongAdder[] bucketNanos = new LongAdder[BUCKETS];
+
+	public SolverMetrics() {
+		for (int i = 0; i < BUCKETS; i++) {
+			bucketStates[i] = new LongAdder();
+			bucketNanos[i] = new LongAdder();
+		}
+	}
+
+	public static int bucket(int area) {
+		return 31 - Integer.numberOfLeadingZeros(Math.max(area, 1));
+	}
+
+	void memoHit() {
+		memoHits.increment();
+	}
+
+	void memoMiss() {
+		memoMisses.increment();
+	}
+
+	void duplicatesRemoved(int count) {
+		duplicates.add(count);
+	}
+
+	void recordState(EllShape ell, long nanos, int subdivisions, int improvements, boolean isOptimal) {
+		states.increment();
+		enumerated.add(subdivisions);
+		accepted.add(improvements);
+		if (isOptimal)
+			earlyExits.increment();
+		if (improvements == 0)
+			initialWins.increment();
+		int bucket = bucket(ell.getArea());
+		bucketStates[bucket].increment();
+		bucketNanos[bucket].add(nanos);
+	}
+
+	public long memoHits() { return memoHits.sum(); }
+
+	public long memoMisses() { return memoMisses.sum(); }
+
+	public long states() { return states.sum(); }
+
+	public long subdivisionsEnumerated() { return enumerated.sum(); }
+
+	public long subdivisionsAccepted() { return accepted.sum(); }
+
+	public long duplicatesRemoved() { return duplicates.sum(); }
+
+	public long earlyExits() { return earlyExits.sum(); }
+
+	public long initialWins() { return initialWins.sum(); }
+
+	public long statesInBucket(int bucket) { return bucketStates[bucket].sum(); }
+
+	public long nanosInBucket(int bucket) { return bucketNanos[bucket].sum(); }
+
+	public void reset() {
+		for (LongAdder adder : new LongAdder[] { memoHits, memoMisses, states, enumerated, accepted, duplicates,
+				earlyExits, initialWins })
+			adder.reset();
+		for (int i = 0; i < BUCKETS; i++) {
+			bucketStates[i].reset();
+			bucketNanos[i].reset();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append("memo hits " + memoHits() + ", misses " + memoMisses() + "\n");
+		result.append("states " + states() + ", early exits " + earlyExits() + ", initial wins " + initialWins() + "\n");
+		result.append("subdivisions enumerated " + subdivisionsEnumerated() + ", accepted " + subdivisionsAccepted()
+				+ ", duplicates removed " + duplicatesRemoved() + "\n");
+		for (int i = 0; i < BUCKETS; i++)
+			if (statesInBucket(i) > 0)
+				result.append("area [" + (1L << i) + ", " + (2L << i) + ") : " + statesInBucket(i) + " states, "
+						+ nanosInBucket(i) / 1000000.0 + " ms\n");
+		return result.toString();
+	}
+}
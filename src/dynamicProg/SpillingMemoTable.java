@@ -0,0 +1,308 @@
+package dynamicProg;
+
+/* A SpillingMemoTable is a MemoTable holding at most about budget bytes of
+   packings on the heap.
+
+   A greedy packing is not kept: only its size is, and it is built again
+   by EllShape.packGreedily when needed. The other packings are kept in
+   least recently used order. When their estimated weight goes over the
+   budget, the least recently used ones are evicted:
+   - a flat packing (a heuristic packing, whose tiles are held by the
+     packing itself) is written to a spill file of directory, from which it
+     is read back when needed,
+   - a composed packing (two parts of a subdivision, see Packing) is dropped,
+     and computed again when needed, from the packings of its parts, whose
+     sizes are known: it has the same size again.
+   A heuristic packing is never dropped: it comes from the heuristic of the
+   solver which stored it (see DynamicProgrammingSolver.setInitialHeuristic),
+   which a computation from the table alone would not match. Without
+   directory, the heuristic packings stay on the heap: they are counted in
+   the budget, but only the composed ones are evicted.
+
+   Only the number of tiles of every shape is kept, in a compact table: get
+   and put return lazy packings (see Packing.lazy), which know their size
+   without holding their tiles. The search only needs the sizes: the
+   packings themselves are only read back, or computed again, when the
+   packing of the ground is iterated, along its optimal subdivisions. Since
+   the packings built by the solver refer to lazy packings, an evicted
+   packing is not retained by the packings of larger shapes.
+
+   The weights are rough estimates of the heap used by a packing, for a
+   64 bits JVM with compressed references: ENTRY_BYTES for the packing, its
+   entry and its lazy packings, and TILE_BYTES for each tile of a flat
+   packing, held in its four int columns (see Packing). The compact table
+   of sizes is not counted: it takes about 50 bytes per shape.
+
+   The shapes are known by their keys (see EllShape.key), so their lengths
+   must be at most EllShape.MAX_KEY_LENGTH.
+
+   Like MemoTable, a SpillingMemoTable is not thread-safe.
+ */
+
+import geometry.EllShape;
+import geometry.Packing;
+import geometry.Tile;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class SpillingMemoTable extends MemoTable implements AutoCloseable {
+	static final long ENTRY_BYTES = 256;
+	static final long TILE_BYTES = 4 * Integer.BYTES;
+	private static final long FREE = -1;
+	// The position of a packing which is not in the spill file.
+	private static final long UNSPILLED = -1;
+	private static final long GREEDY = -2;
+
+	private final Tile basicTile;
+	private final long budget;
+	private final Path spillFile;
+	private final FileChannel spill;
+	private long spillEnd = 0;
+
+	// The packings on the heap, least recently used first.
+	private final LinkedHashMap<EllShape, Packing> resident = new LinkedHashMap<EllShape, Packing>(16, 0.75f, true);
+	// The heuristic packings kept on the heap for lack of directory.
+	private final HashMap<EllShape, Packing> pinned = new HashMap<EllShape, Packing>();
+	private long residentBytes = 0;
+
+	// Every known shape: its number of tiles, and the position of its
+	// packing in the spill file (or UNSPILLED, or GREEDY), by open
+	// addressing on packed keys.
+	private long[] keys = new long[1024];
+	private int[] sizes = new int[1024];
+	private long[] positions = new long[1024];
+	private int known = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long spills = 0;
+	private long reloads = 0;
+	private long recomputations = 0;
+
+	// Without directory, only the composed packings are evicted.
+	// A greedy or composed packing is never written to the spill file.
+	public SpillingMemoTable(Tile basicTile, long budget, Path directory) throws IOException {
+		super(basicTile);
+		this.basicTile = basicTile;
+		this.budget = budget;
+		Arrays.fill(keys, FREE);
+		if (directory != null) {
+			Files.createDirectories(directory);
+			spillFile = Files.createTempFile(directory, "memo-", ".spill");
+			spill = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.DELETE_ON_CLOSE);
+		} else {
+			spillFile = null;
+			spill = null;
+		}
+	}
+
+	public SpillingMemoTable(Tile basicTile, long budget) throws IOException {
+		this(basicTile, budget, null);
+	}
+
+	@Override
+	public Packing get(EllShape ell) {
+		int slot = find(ell.key());
+		if (keys[slot] == FREE) {
+			misses++;
+			return null;
+		}
+		hits++;
+		resident.get(ell);
+		return lazy(ell, sizes[slot]);
+	}
+
+	@Override
+	public Packing put(EllShape ell, Packing pack) {
+		int slot = find(ell.key());
+		if (keys[slot] == FREE) {
+			keys[slot] = ell.key();
+			positions[slot] = UNSPILLED;
+			if (++known * 2 > keys.length)
+				grow();
+			slot = find(ell.key());
+		}
+		sizes[slot] = pack.size();
+		admit(ell, pack);
+		return lazy(ell, pack.size());
+	}
+
+	@Override
+	public int size() {
+		return known;
+	}
+
+	private Packing lazy(EllShape ell, int size) {
+		return Packing.lazy(size, () -> resolve(ell));
+	}
+
+	// The packing of a known shape, from the heap, the spill file, or
+	// computed again.
+	private Packing resolve(EllShape ell) {
+		Packing pack = resident.get(ell);
+		if (pack == null)
+			pack = pinned.get(ell);
+		if (pack != null)
+			return pack;
+		int slot = find(ell.key());
+		if (positions[slot] == GREEDY)
+			return ell.packGreedily(basicTile);
+		if (positions[slot] >= 0) {
+			reloads++;
+			pack = read(positions[slot]);
+		} else {
+			recomputations++;
+			pack = new DynamicProgrammingSolver(ell, basicTile, this).computeOptimalSolution(ell);
+			if (pack.size() != sizes[slot])
+				throw new IllegalStateException("packing of " + ell.width + "x" + ell.height + " computed again with "
+						+ pack.size() + " tiles instead of " + sizes[slot]);
+		}
+		admit(ell, pack);
+		return pack;
+	}
+
+	// A flat packing with as many tiles as the greedy packing is replaced by
+	// the greedy packing: the solver only keeps a heuristic packing when it is
+	// better (see BestSolution).
+	private void admit(EllShape ell, Packing pack) {
+		Packing old = resident.remove(ell);
+		if (old == null)
+			old = pinned.remove(ell);
+		if (old != null)
+			residentBytes -= weight(old);
+		if (!pack.isComposed() && pack.size() == ell.countGreedily(basicTile)) {
+			positions[find(ell.key())] = GREEDY;
+			return;
+		}
+		residentBytes += weight(pack);
+		if (spill == null && !pack.isComposed())
+			pinned.put(ell, pack);
+		else
+			resident.put(ell, pack);
+		Iterator<Map.Entry<EllShape, Packing>> entries = resident.entrySet().iterator();
+		while (residentBytes > budget && entries.hasNext()) {
+			Map.Entry<EllShape, Packing> entry = entries.next();
+			entries.remove();
+			residentBytes -= weight(entry.getValue());
+			evictions++;
+			int slot = find(entry.getKey().key());
+			if (!entry.getValue().isComposed() && positions[slot] < 0) {
+				positions[slot] = write(entry.getValue());
+				spills++;
+			}
+		}
+	}
+
+	private static long weight(Packing pack) {
+		return ENTRY_BYTES + (pack.isComposed() ? 0 : TILE_BYTES * pack.size());
+	}
+
+	// A spilled packing: its number of tiles, then x, y, width and height
+	// of each tile.
+	private long write(Packing pack) {
+		ByteBuffer buffer = ByteBuffer.allocate(4 + 16 * pack.size());
+		buffer.putInt(pack.size());
+		pack.forEachTile((x, y, width, height) -> buffer.putInt(x).putInt(y).putInt(width).putInt(height));
+		buffer.flip();
+		long position = spillEnd;
+		try {
+			while (buffer.hasRemaining())
+				spillEnd += spill.write(buffer, spillEnd);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return position;
+	}
+
+	private Packing read(long position) {
+		try {
+			ByteBuffer count = ByteBuffer.allocate(4);
+			readFully(count, position);
+			ByteBuffer buffer = ByteBuffer.allocate(16 * count.getInt(0));
+			readFully(buffer, position + 4);
+			buffer.flip();
+			Packing pack = new Packing(count.getInt(0));
+			while (buffer.hasRemaining()) {
+				int x = buffer.getInt(), y = buffer.getInt(), width = buffer.getInt(), height = buffer.getInt();
+				pack.addTile(width, height, x, y);
+			}
+			return pack;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining())
+			if (spill.read(buffer, position + buffer.position()) < 0)
+				throw new IOException("truncated spill file: " + spillFile);
+	}
+
+	// The slot of key, or the free slot where it would be added.
+	private int find(long key) {
+		int mask = keys.length - 1;
+		int slot = (Long.hashCode(key) * 0x9E3779B9 >>> 1) & mask;
+		while (keys[slot] != FREE && keys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys, oldPositions = positions;
+		int[] oldSizes = sizes;
+		keys = new long[2 * oldKeys.length];
+		sizes = new int[keys.length];
+		positions = new long[keys.length];
+		Arrays.fill(keys, FREE);
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldKeys[i] != FREE) {
+				int slot = find(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				sizes[slot] = oldSizes[i];
+				positions[slot] = oldPositions[i];
+			}
+	}
+
+	public long residentBytes() { return residentBytes; }
+
+	public int residentShapes() { return resident.size() + pinned.size(); }
+
+	public long hits() { return hits; }
+
+	public long misses() { return misses; }
+
+	public long evictions() { return evictions; }
+
+	public long spills() { return spills; }
+
+	public long reloads() { return reloads; }
+
+	public long recomputations() { return recomputations; }
+
+	public long spillBytes() { return spillEnd; }
+
+	@Override
+	public String toString() {
+		return "memo " + known + " shapes, " + residentShapes() + " on the heap (" + residentBytes / 1024 + " KiB), hits "
+				+ hits + ", misses " + misses + ", evictions " + evictions + ", spills " + spills + " ("
+				+ spillEnd / 1024 + " KiB), reloads " + reloads + ", recomputations " + recomputations;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (spill != null)
+			spill.close();
+	}
+}
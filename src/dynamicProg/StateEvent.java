@@ -0,0 +1,37 @@
+package dynamicProg;
+
+/* Flight Recorder event of the computation of one L-shape, recorded by the
+   solvers when it lasts longer than the threshold (20 ms by default, which
+   may be changed in the recording settings). The solvers only create it
+   while a recording runs (see FlightRecording): the first event of a JVM
+   initialises Flight Recorder, which alone would outlast most solves. */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("dynamicProg.State")
+@Label("L-shape state")
+@Category("Dynamic Programming")
+@Description("Computation of the optimal packing of one L-shape")
+@Threshold("20 ms")
+class StateEvent extends jdk.jfr.Event {
+	@Label("Width")
+	int width;
+	@Label("Height")
+	int height;
+	@Label("Corner X")
+	int cornerX;
+	@Label("Corner Y")
+	int cornerY;
+	@Label("Tile width")
+	int tileWidth;
+	@Label("Tile height")
+	int tileHeight;
+	@Label("Subdivisions")
+	int subdivisions;
+	@Label("Tiles")
+	int tiles;
+}
@@ -0,0 +1,191 @@
+package geometry;
+
+/* BlockHeuristic packs an L-shape with a few homogeneous blocks, that is
+   rectangles filled with a grid of tiles all having the same orientation.
+   It is a lower bound much closer to the optimum than the greedy packing,
+   which is a single block (or two for an L-shape).
+
+   A rectangle is packed with the best of:
+   - one block,
+   - two blocks, separated by a vertical or a horizontal cut,
+   - five blocks arranged as a pinwheel: four blocks turning around a
+     central one (the first-order heuristic of Smith and De Cani). With
+     cuts x1 <= x2 and y1 <= y2, the blocks are [0,x1]x[0,y2],
+     [x1,W]x[0,y1], [x2,W]x[y1,H], [0,x2]x[y2,H] and [x1,x2]x[y1,y2].
+   The cuts are taken at raster points (see RasterPoints), measured from
+   the side of the rectangle the block touches. There are O(R^4) pinwheels
+   for R raster points: at most budget of them are tried per rectangle, and
+   the search stops at the upper bound of the rectangle.
+
+   An L-shape which is not a rectangle is cut into two rectangles, along
+   either side of its inside corner, unless its greedy packing is better.
+
+   The layout found for each rectangle is kept, and shared by all the
+   L-shapes using it: a BlockHeuristic is meant to live as long as the
+   solver using it. count does not build any tile, pack builds the packing
+   which count has found.
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+
+public class BlockHeuristic {
+
+	public static final int DEFAULT_BUDGET = 4096;
+
+	private final int longSide;
+	private final int shortSide;
+	private final RasterPoints raster;
+	private final Tile basicTile;
+	private final int budget;
+	private final ConcurrentHashMap<Long, Layout> layouts = new ConcurrentHashMap<Long, Layout>();
+
+	// The blocks of a rectangle, as (x, y, width, height) quadruples.
+	private static final class Layout {
+		final int count;
+		final int[] blocks;
+
+		Layout(int count, int... blocks) {
+			this.count = count;
+			this.blocks = blocks;
+		}
+	}
+
+	public BlockHeuristic(Tile basicTile) {
+		this(basicTile, DEFAULT_BUDGET);
+	}
+
+	public BlockHeuristic(Tile basicTile, int budget) {
+		this.longSide = Math.max(basicTile.getWidth(), basicTile.getHeight());
+		this.shortSide = Math.min(basicTile.getWidth(), basicTile.getHeight());
+		this.raster = RasterPoints.of(basicTile);
+		this.basicTile = basicTile;
+		this.budget = budget;
+	}
+
+	public boolean isFor(Tile tile) {
+		return Math.max(tile.getWidth(), tile.getHeight()) == longSide
+				&& Math.min(tile.getWidth(), tile.getHeight()) == shortSide;
+	}
+
+	public int count(EllShape ell) {
+		if (ell.isRectangle())
+			return rectangle(ell.width, ell.height).count;
+		return Math.max(ell.countGreedily(basicTile), Math.max(verticalCut(ell), horizontalCut(ell)));
+	}
+
+	private int verticalCut(EllShape ell) {
+		int x = ell.insideCorner.x, y = ell.insideCorner.y;
+		return rectangle(x, ell.height).count + rectangle(ell.width - x, y).count;
+	}
+
+	private int horizontalCut(EllShape ell) {
+		int x = ell.insideCorner.x, y = ell.insideCorner.y;
+		return rectangle(ell.width, y).count + rectangle(x, ell.height - y).count;
+	}
+
+	public Packing pack(EllShape ell) {
+		Packing pack = new Packing();
+		if (ell.isRectangle()) {
+			addBlocks(pack, rectangle(ell.width, ell.height), 0, 0);
+			return pack;
+		}
+		// The greedy packing has columns (or rows) of tiles across the cut.
+		if (ell.countGreedily(basicTile) > Math.max(verticalCut(ell), horizontalCut(ell)))
+			return ell.packGreedily(basicTile);
+		int x = ell.insideCorner.x, y = ell.insideCorner.y;
+		if (verticalCut(ell) >= horizontalCut(ell)) {
+			addBlocks(pack, rectangle(x, ell.height), 0, 0);
+			addBlocks(pack, rectangle(ell.width - x, y), x, 0);
+		} else {
+			addBlocks(pack, rectangle(ell.width, y), 0, 0);
+			addBlocks(pack, rectangle(x, ell.height - y), 0, y);
+		}
+		return pack;
+	}
+
+	private void addBlocks(Packing pack, Layout layout, int x, int y) {
+		for (int i = 0; i < layout.blocks.length; i += 4) {
+			int width = layout.blocks[i + 2], height = layout.blocks[i + 3];
+			boolean lying = lying(width, height) >= standing(width, height);
+			int tileWidth = lying ? longSide : shortSide, tileHeight = lying ? shortSide : longSide;
+			for (int i1 = 0; i1 + tileWidth <= width; i1 += tileWidth)
+				for (int j1 = 0; j1 + tileHeight <= height; j1 += tileHeight)
+					pack.addTile(tileWidth, tileHeight, x + layout.blocks[i] + i1, y + layout.blocks[i + 1] + j1);
+		}
+	}
+
+	private int lying(int width, int height) {
+		return (width / longSide) * (height / shortSide);
+	}
+
+	private int standing(int width, int height) {
+		return (width / shortSide) * (height / longSide);
+	}
+
+	private int block(int width, int height) {
+		return Math.max(lying(width, height), standing(width, height));
+	}
+
+	private int[] rasterPoints(int length) {
+		int count = 0;
+		for (int n = 0; n <= length; n++)
+			if (raster.contains(n))
+				count++;
+		int[] points = new int[count];
+		count = 0;
+		for (int n = 0; n <= length; n++)
+			if (raster.contains(n))
+				points[count++] = n;
+		return points;
+	}
+
+	private Layout rectangle(int width, int height) {
+		long key = ((long) width << 32) | height;
+		Layout layout = layouts.get(key);
+		if (layout == null) {
+			layout = search(width, height);
+			layouts.put(key, layout);
+		}
+		return layout;
+	}
+
+	private Layout search(int width, int height) {
+		int bound = new EllShape(width, height, width, height).getBestPackingUpperBound(basicTile);
+		Layout best = new Layout(block(width, height), 0, 0, width, height);
+		if (best.count >= bound)
+			return best;
+		int[] xs = rasterPoints(width), ys = rasterPoints(height);
+		for (int x : xs) {
+			int count = block(x, height) + block(width - x, height);
+			if (count > best.count)
+				best = new Layout(count, 0, 0, x, height, x, 0, width - x, height);
+		}
+		for (int y : ys) {
+			int count = block(width, y) + block(width, height - y);
+			if (count > best.count)
+				best = new Layout(count, 0, 0, width, y, 0, y, width, height - y);
+		}
+		int tried = 0;
+		pinwheels:
+		for (int x1 : xs)
+			for (int r3 : xs) {
+				int x2 = width - r3;
+				if (x2 < x1)
+					break;
+				for (int y1 : ys)
+					for (int r4 : ys) {
+						int y2 = height - r4;
+						if (y2 < y1)
+							break;
+						if (best.count >= bound || tried++ >= budget)
+							break pinwheels;
+						int count = block(x1, y2) + block(width - x1, y1) + block(r3, height - y1) + block(x2, r4)
+								+ block(x2 - x1, y2 - y1);
+						if (count > best.count)
+							best = new Layout(count, 0, 0, x1, y2, x1, 0, width - x1, y1, x2, y1, r3, height - y1,
+									0, y2, x2, r4, x1, y1, x2 - x1, y2 - y1);
+					}
+			}
+		return best;
+	}
+}
@@ -3,27 +3,50 @@ package geometry;
 /* A Coordinate is an integral point of the plane (as such, it is immutable).
    A Coordinate can be translated, or rotated around the center by 0, 90,
    180 or 270, which gives an other Coordinate.
+
+   The coordinates of the small points are interned: Coordinate.of returns
+   the same instance for them, and the moves of a Coordinate only allocate
+   for the other points.
 */
 
 public class Coordinate {
 	public final int x;
 	public final int y;
 
+	// Interned points: CACHE_LOW <= x, y < CACHE_HIGH, built when first used
+	// (a race builds equal instances, which is harmless).
+	private static final int CACHE_LOW = -64;
+	private static final int CACHE_HIGH = 256;
+	private static final int CACHE_SIDE = CACHE_HIGH - CACHE_LOW;
+	private static final Coordinate[] cache = new Coordinate[CACHE_SIDE * CACHE_SIDE];
+
 	public Coordinate(int x, int y) {
 		this.x = x;
 		this.y = y;
 	}
 
+	public static Coordinate of(int x, int y) {
+		if (x < CACHE_LOW || x >= CACHE_HIGH || y < CACHE_LOW || y >= CACHE_HIGH)
+			return new Coordinate(x, y);
+		int index = (x - CACHE_LOW) * CACHE_SIDE + (y - CACHE_LOW);
+		Coordinate point = cache[index];
+		if (point == null) {
+			point = new Coordinate(x, y);
+			cache[index] = point;
+		}
+		return point;
+	}
+
 	public Coordinate rotateBy(Rotation r) {
 		switch (r) {
 		case ID:
 			return this;
 		case QUARTER:
-			return new Coordinate(-y, x);
+			return of(-y, x);
 		case HALF:
-			return new Coordinate(-x, -y);
+			return of(-x, -y);
 		case THREEQUARTER:
-			return new Coordinate(y, -x);
+			return of(y, -x);
 		}
 		return null;
 	}
@@ -33,15 +56,15 @@ public class Coordinate {
 	}
 
 	public Coordinate translateBy(Coordinate vec) {
-		return new Coordinate(this.x + vec.x, this.y + vec.y);
+		return of(this.x + vec.x, this.y + vec.y);
 	}
 	
 	public Coordinate translateBy(int x, int y) {
-		return new Coordinate(this.x + x, this.y + y);
+		return of(this.x + x, this.y + y);
 	}
 
 	public Coordinate backTranslateBy(Coordinate vec) {
-		return new Coordinate(this.x - vec.x, this.y - vec.y);
+		return of(this.x - vec.x, this.y - vec.y);
 	}
 
 }
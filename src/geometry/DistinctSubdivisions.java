@@ -0,0 +1,101 @@
+package geometry;
+
+/* DistinctSubdivisions filters the subdivisions of one L-shape, keeping only
+   the first subdivision of every unordered pair of parts. The parts are
+   compared by their canonical form (see EllShape.isCanonical), after being
+   reduced to the raster points of the tile (see EllShape.reduce) if raster
+   is not null: two subdivisions with the same pair have the same optimal
+   number of tiles, so the later ones cannot improve the solution and are
+   not worth retrieving the packings of their parts.
+
+   Once reduced, many subdivisions have the same pair: the two cuts at
+   raster points x and w - x of a rectangle (both are enumerated, see
+   EllShape.forEachSubdivision), or cuts whose parts only differ by lengths
+   rounded down to the same raster point. The duplicates dropped are
+   counted by removed.
+
+   It is used as a SubdivisionVisitor wrapping the visitor of the shape. An
+   instance is meant for the enumeration of a single L-shape.
+ */
+
+import java.util.Arrays;
+
+public class DistinctSubdivisions implements SubdivisionVisitor {
+	private static final long FREE = -1;
+
+	private final SubdivisionVisitor visitor;
+	private final RasterPoints raster;
+	// The pairs seen so far, in an open addressing table of (low, high) keys
+	// (a free slot has low == FREE): no object is allocated per subdivision.
+	private long[] lows = new long[64];
+	private long[] highs = new long[64];
+	private int size = 0;
+	private int removed = 0;
+
+	public DistinctSubdivisions(SubdivisionVisitor visitor, RasterPoints raster) {
+		this.visitor = visitor;
+		this.raster = raster;
+		Arrays.fill(lows, FREE);
+	}
+
+	@Override
+	public boolean visit(PackedSubdivision sub) {
+		if (!isNew(key(sub.width1, sub.height1, sub.cornerX1, sub.cornerY1),
+				key(sub.width2, sub.height2, sub.cornerX2, sub.cornerY2)))
+			return true;
+		return visitor.visit(sub);
+	}
+
+	// A key of -1 (lengths too large to be packed) is never a duplicate.
+	private boolean isNew(long key1, long key2) {
+		if (key1 < 0 || key2 < 0)
+			return true;
+		long low = Math.min(key1, key2), high = Math.max(key1, key2);
+		int mask = lows.length - 1;
+		int slot = slot(low, high, mask);
+		while (lows[slot] != FREE) {
+			if (lows[slot] == low && highs[slot] == high) {
+				removed++;
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		lows[slot] = low;
+		highs[slot] = high;
+		if (++size * 2 > lows.length)
+			grow();
+		return true;
+	}
+
+	private static int slot(long low, long high, int mask) {
+		return (Long.hashCode(low * 31 + high) * 0x9E3779B9 >>> 1) & mask;
+	}
+
+	private void grow() {
+		long[] oldLows = lows, oldHighs = highs;
+		lows = new long[2 * oldLows.length];
+		highs = new long[2 * oldHighs.length];
+		Arrays.fill(lows, FREE);
+		int mask = lows.length - 1;
+		for (int i = 0; i < oldLows.length; i++)
+			if (oldLows[i] != FREE) {
+				int slot = slot(oldLows[i], oldHighs[i], mask);
+				while (lows[slot] != FREE)
+					slot = (slot + 1) & mask;
+				lows[slot] = oldLows[i];
+				highs[slot] = oldHighs[i];
+			}
+	}
+
+	public int removed() {
+		return removed;
+	}
+
+	// The key of the canonical form of the reduced shape (see
+	// EllShape.canonicalKey), or -1 if the lengths do not fit into a key.
+	private long key(int width, int height, int cornerX, int cornerY) {
+		if (width > EllShape.MAX_KEY_LENGTH || height > EllShape.MAX_KEY_LENGTH)
+			return -1;
+		return EllShape.canonicalKey(width, height, cornerX, cornerY, raster);
+	}
+}
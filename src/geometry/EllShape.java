@@ -51,21 +51,29 @@ public class EllShape {
 	public final int height;
 	public final Coordinate insideCorner;
 
+	public static final int MAX_KEY_LENGTH = 0x7FFF;
+
 	public EllShape(int width, int height, Coordinate insideCorner) {
+		this(width, height, insideCorner.x, insideCorner.y);
+	}
+
+	// Same as above, without a Coordinate for the inside corner: the corner
+	// of the shape is interned (see Coordinate.of).
+	public EllShape(int width, int height, int cornerX, int cornerY) {
 		assert (width >= 0 && height >= 0);
-		int cornerX = Math.min(insideCorner.x, width);
-		int cornerY = Math.min(insideCorner.y, height);
+		cornerX = Math.min(cornerX, width);
+		cornerY = Math.min(cornerY, height);
 		boolean isEmpty = width == 0 || height == 0 || (cornerX == 0 && cornerY == 0);
 		if (isEmpty) {
 			this.width = 0;
 			this.height = 0;
-			this.insideCorner = new Coordinate(0, 0);
+			this.insideCorner = Coordinate.of(0, 0);
 			return;
 		}
 		this.width = cornerY == 0 ? cornerX : width;
 		this.height = cornerX == 0 ? cornerY : height;
 		boolean isRectangle = cornerX == this.width || cornerY == this.height;
-		this.insideCorner = (isRectangle) ? new Coordinate(this.width, this.height) : new Coordinate(cornerX, cornerY);
+		this.insideCorner = (isRectangle) ? Coordinate.of(this.width, this.height) : Coordinate.of(cornerX, cornerY);
 	}
 
 	// TODO: DONE.
@@ -83,6 +91,45 @@ public class EllShape {
 		return getArea() / basicTile.getArea();
 	}
 
+	// The tightest of several cheap upper bounds:
+	// - the trivial bound above,
+	// - the area of the L-shape once its four lengths are rounded down to
+	//   raster points (see RasterPoints), each arm separately: a tile going
+	//   above insideCorner.y ends before insideCorner.x, any other tile ends
+	//   below insideCorner.y,
+	// - for rectangles, Barnes' bound: cutting the tiles into bars 1 x a (or
+	//   1 x b) gives a packing of bars, whose waste is at least
+	//   min(r*s, (a-r)*(a-s)), where r and s are the sides of the rectangle
+	//   modulo a.
+	public int getBestPackingUpperBound(Tile basicTile) {
+		return bestPackingUpperBound(width, height, insideCorner.x, insideCorner.y, basicTile,
+				RasterPoints.of(basicTile));
+	}
+
+	// Same as getBestPackingUpperBound, for the normalised L-shape of the
+	// given lengths (as in PackedSubdivision), without building it.
+	public static int bestPackingUpperBound(int width, int height, int cornerX, int cornerY, Tile basicTile,
+			RasterPoints raster) {
+		int usableWidth = raster.floor(width);
+		int usableHeight = raster.floor(height);
+		int usableCornerX = raster.floor(cornerX);
+		int usableCornerY = raster.floor(cornerY);
+		int usableArea = usableWidth * usableCornerY + usableHeight * usableCornerX - usableCornerX * usableCornerY;
+		int area = width * cornerY + height * cornerX - cornerX * cornerY;
+		int bound = Math.min(area / basicTile.getArea(), usableArea / basicTile.getArea());
+		if (cornerX == width || cornerY == height) {
+			int waste = Math.max(barnesWaste(usableWidth, usableHeight, basicTile.getWidth()),
+					barnesWaste(usableWidth, usableHeight, basicTile.getHeight()));
+			bound = Math.min(bound, (usableArea - waste) / basicTile.getArea());
+		}
+		return bound;
+	}
+
+	private static int barnesWaste(int width, int height, int side) {
+		int r = width % side, s = height % side;
+		return Math.min(r * s, (side - r) * (side - s));
+	}
+
 	// TODO: DONE.
 	public Packing packGreedilyHorizontally(Tile basicTile) {
 		Packing pack = new Packing(); 
@@ -90,14 +137,22 @@ public class EllShape {
 		if (tile.getWidth() < tile.getHeight())
 			tile.flip();
 		
-		// 3me Version : Programmation fonctionnelle (plus rapide)
+		// 4me Version : seules les cases contenues sont parcourues (cf countGreedily)
+		int columns = width / tile.getWidth(), innerColumns = insideCorner.x / tile.getWidth();
+		int rows = height / tile.getHeight(), innerRows = insideCorner.y / tile.getHeight();
+		for (int x = 0; x < columns; x++)
+			for (int y = 0; y < (x < innerColumns ? rows : innerRows); y++)
+				pack.addTile(tile.getWidth(), tile.getHeight(), x * tile.getWidth(), y * tile.getHeight());
+		return pack;
+
+		/* 3me Version : Programmation fonctionnelle (plus rapide)
 		range(1, width/tile.getWidth()+1)
 		.flatMap(x -> IntStream.rangeClosed(1, height/tile.getHeight())
 								.mapToObj(y -> new Coordinate(x*tile.getWidth(), y*tile.getHeight())))
 		.filter(coord -> contains(coord))
 		.forEach(pos -> pack.addTile(new Tile(tile.getWidth(), tile.getHeight(), pos.x - tile.getWidth(), pos.y - tile.getHeight())));
 
-		return pack;
+		return pack; */
 		
 		/* 1re Version code (lente et laborieuse)
 		Coordinate topRightCorner = new Coordinate(tile.getWidth(), tile.getHeight());
@@ -137,14 +192,22 @@ public class EllShape {
 		if (tile.getWidth() > tile.getHeight())
 			tile.flip();
 		
-		// 3me Version : Programmation fonctionnelle (plus rapide)
+		// 4me Version : seules les cases contenues sont parcourues (cf countGreedily)
+		int columns = width / tile.getWidth(), innerColumns = insideCorner.x / tile.getWidth();
+		int rows = height / tile.getHeight(), innerRows = insideCorner.y / tile.getHeight();
+		for (int x = 0; x < columns; x++)
+			for (int y = 0; y < (x < innerColumns ? rows : innerRows); y++)
+				pack.addTile(tile.getWidth(), tile.getHeight(), x * tile.getWidth(), y * tile.getHeight());
+		return pack;
+
+		/* 3me Version : Programmation fonctionnelle (plus rapide)
 		range(1, width/tile.getWidth()+1)
 		.flatMap(x -> IntStream.rangeClosed(1, height/tile.getHeight())
 								.mapToObj(y -> new Coordinate(x*tile.getWidth(), y*tile.getHeight())))
 		.filter(coord -> contains(coord))
 		.forEach(pos -> pack.addTile(new Tile(tile.getWidth(), tile.getHeight(), pos.x - tile.getWidth(), pos.y - tile.getHeight())));
 
-		return pack;
+		return pack; */
 		
 		/* 1re Version code (lente et laborieuse)
 		Coordinate topRightCorner = new Coordinate(tile.getWidth(), tile.getHeight());
@@ -179,15 +242,114 @@ public class EllShape {
 
 	// TODO: DONE.
 	public Packing packGreedily(Tile basicTile) {
-		Packing packHor = packGreedilyHorizontally(basicTile);
-		Packing packVer = packGreedilyVertically(basicTile);
-		return (packHor.size() >= packVer.size()) ? packHor : packVer;
+		return (countGreedilyHorizontally(basicTile) >= countGreedilyVertically(basicTile))
+				? packGreedilyHorizontally(basicTile) : packGreedilyVertically(basicTile);
+	}
+
+	// The sizes of the greedy packings, without building them. The greedy
+	// packing fills the columns of tiles left of the inside corner up to the
+	// top, and the other columns up to the inside corner: the grid of tiles
+	// fitting into the bounding rectangle, minus the cells above and right
+	// of the inside corner.
+	public int countGreedilyHorizontally(Tile basicTile) {
+		int longSide = Math.max(basicTile.getWidth(), basicTile.getHeight());
+		int shortSide = Math.min(basicTile.getWidth(), basicTile.getHeight());
+		return countGreedily(longSide, shortSide);
+	}
+
+	public int countGreedilyVertically(Tile basicTile) {
+		int longSide = Math.max(basicTile.getWidth(), basicTile.getHeight());
+		int shortSide = Math.min(basicTile.getWidth(), basicTile.getHeight());
+		return countGreedily(shortSide, longSide);
+	}
+
+	public int countGreedily(Tile basicTile) {
+		return Math.max(countGreedilyHorizontally(basicTile), countGreedilyVertically(basicTile));
+	}
+
+	private int countGreedily(int tileWidth, int tileHeight) {
+		int columns = width / tileWidth, innerColumns = insideCorner.x / tileWidth;
+		int rows = height / tileHeight, innerRows = insideCorner.y / tileHeight;
+		return innerColumns * rows + columns * innerRows - innerColumns * innerRows;
 	}
 
 	public boolean isRectangle() {
 		return insideCorner.x == width || insideCorner.y == height;
 	}
 
+	// Reflection along the diagonal x == y. An L-shape and its transposition
+	// have the same packings, up to that reflection (see Packing.transpose).
+	public EllShape transpose() {
+		return new EllShape(height, width, insideCorner.y, insideCorner.x);
+	}
+
+	// The shape packed into a long, 16 bits per length (see key below).
+	public long key() {
+		return key(width, height, insideCorner.x, insideCorner.y);
+	}
+
+	// The packed key of a normalised L-shape (as built by the constructor),
+	// used by the tables of shapes instead of EllShape objects. Each length
+	// must be less than 2^15, so that keys are not negative.
+	public static long key(int width, int height, int cornerX, int cornerY) {
+		if (width > MAX_KEY_LENGTH || height > MAX_KEY_LENGTH)
+			throw new IllegalArgumentException("shape too large for a key: " + width + "x" + height);
+		return ((long) width << 48) | ((long) height << 32) | ((long) cornerX << 16) | cornerY;
+	}
+
+	// The key of the shape (width, height, cornerX, cornerY) once normalised
+	// as by the constructor, without building it (the lengths must fit into
+	// a key, see above). The empty shape has key 0.
+	public static long normalisedKey(int width, int height, int cornerX, int cornerY) {
+		cornerX = Math.min(cornerX, width);
+		cornerY = Math.min(cornerY, height);
+		if (width == 0 || height == 0 || (cornerX == 0 && cornerY == 0))
+			return 0;
+		if (cornerY == 0)
+			width = cornerX;
+		if (cornerX == 0)
+			height = cornerY;
+		boolean isRectangle = cornerX == width || cornerY == height;
+		return isRectangle ? key(width, height, width, height) : key(width, height, cornerX, cornerY);
+	}
+
+	// The key of the canonical form of the shape, reduced to the raster
+	// points (see reduce) if raster is not null, then normalised: the key of
+	// the shape the solvers store in place of this one.
+	public static long canonicalKey(int width, int height, int cornerX, int cornerY, RasterPoints raster) {
+		if (raster != null)
+			return canonicalKey(raster.floor(width), raster.floor(height), raster.floor(cornerX), raster.floor(cornerY),
+					null);
+		long key = normalisedKey(width, height, cornerX, cornerY);
+		width = keyWidth(key);
+		height = keyHeight(key);
+		if (width < height || (width == height && keyCornerX(key) <= keyCornerY(key)))
+			return key;
+		return key(height, width, keyCornerY(key), keyCornerX(key));
+	}
+
+	public static int keyWidth(long key) {
+		return (int) (key >>> 48);
+	}
+
+	public static int keyHeight(long key) {
+		return (int) (key >>> 32) & 0xFFFF;
+	}
+
+	public static int keyCornerX(long key) {
+		return (int) (key >>> 16) & 0xFFFF;
+	}
+
+	public static int keyCornerY(long key) {
+		return (int) key & 0xFFFF;
+	}
+
+	// Of an L-shape and its transposition, exactly one is canonical (both
+	// when they are equal).
+	public boolean isCanonical() {
+		return width < height || (width == height && insideCorner.x <= insideCorner.y);
+	}
+
 	// TODO: DONE.
 	public int hashCode() {
 		final int prime = 31;
@@ -220,6 +382,165 @@ public class EllShape {
 		return isRectangle() ? rectangleSubdivisions() : ellSubdivisions();
 	}
 
+	/*
+	 * Enumerates the same subdivisions as subdivisions(), in the same order, but
+	 * without allocating anything per subdivision: each one is written into a
+	 * single PackedSubdivision given to the visitor. Stops as soon as the
+	 * visitor returns false, and then returns false.
+	 */
+	public boolean forEachSubdivision(SubdivisionVisitor visitor) {
+		return forEachSubdivision(visitor, null);
+	}
+
+	/*
+	 * Same as forEachSubdivision(visitor), restricted to the cuts at raster
+	 * points of the tile (see RasterPoints) if raster is not null: every cut
+	 * coordinate x1, x2, y1, y2 of the enumeration is a raster point. An
+	 * optimal packing may be pushed down and left until every tile lies at
+	 * raster points, so that the cuts between its tiles may be moved to raster
+	 * points too. Since the symmetric cut of a raster point is not always a
+	 * raster point, the cuts which are skipped by symmetry (up to w / 2 or
+	 * h / 2) are all enumerated in that case. The index of a subdivision is
+	 * its rank in the restricted enumeration.
+	 */
+	public boolean forEachSubdivision(SubdivisionVisitor visitor, RasterPoints raster) {
+		PackedSubdivision sub = new PackedSubdivision();
+		sub.index = -1;
+		return isRectangle() ? forEachRectangleSubdivision(visitor, sub, raster)
+				: forEachEllSubdivision(visitor, sub, raster);
+	}
+
+	// The first cut coordinate from n.
+	private static int up(RasterPoints raster, int n) {
+		return (raster == null) ? n : raster.ceiling(n);
+	}
+
+	// The largest cut coordinate, when it is halved by symmetry.
+	private static int half(RasterPoints raster, int length) {
+		return (raster == null) ? length / 2 : length - 1;
+	}
+
+	// Rounds every length down to a raster point of the tile (see
+	// RasterPoints). The result is contained into this shape, and has the
+	// same optimal packings, so that it may be solved instead.
+	public EllShape reduce(Tile basicTile) {
+		return reduce(RasterPoints.of(basicTile));
+	}
+
+	public EllShape reduce(RasterPoints raster) {
+		int reducedWidth = raster.floor(width), reducedHeight = raster.floor(height);
+		int reducedX = raster.floor(insideCorner.x), reducedY = raster.floor(insideCorner.y);
+		if (reducedWidth == width && reducedHeight == height && reducedX == insideCorner.x && reducedY == insideCorner.y)
+			return this;
+		return new EllShape(reducedWidth, reducedHeight, reducedX, reducedY);
+	}
+
+	private static boolean emit(SubdivisionVisitor visitor, PackedSubdivision sub,
+			int width1, int height1, int cornerX1, int cornerY1, int positionX1, int positionY1, Rotation rotation1,
+			int width2, int height2, int cornerX2, int cornerY2, int positionX2, int positionY2, Rotation rotation2) {
+		sub.index++;
+		sub.setPart1(width1, height1, cornerX1, cornerY1, positionX1, positionY1, rotation1);
+		sub.setPart2(width2, height2, cornerX2, cornerY2, positionX2, positionY2, rotation2);
+		return visitor.visit(sub);
+	}
+
+	// Mirrors rectangleSubdivisions.
+	private boolean forEachRectangleSubdivision(SubdivisionVisitor visitor, PackedSubdivision sub, RasterPoints r) {
+		int w = width, h = height;
+		for (int y1 = up(r, 1); y1 <= half(r, h); y1 = up(r, y1 + 1))
+			if (!emit(visitor, sub, w, y1, w, y1, 0, 0, Rotation.ID,
+					w, h - y1, w, h - y1, 0, y1, Rotation.ID))
+				return false;
+		for (int x1 = up(r, 1); x1 <= half(r, w); x1 = up(r, x1 + 1))
+			if (!emit(visitor, sub, x1, h, x1, h, 0, 0, Rotation.ID,
+					w - x1, h, w - x1, h, x1, 0, Rotation.ID))
+				return false;
+		for (int x1 = up(r, 1); x1 < w; x1 = up(r, x1 + 1))
+			for (int y1 = up(r, 1); y1 < h; y1 = up(r, y1 + 1))
+				if (!emit(visitor, sub, x1, y1, x1, y1, 0, 0, Rotation.ID,
+						w, h, w - x1, h - y1, w, h, Rotation.HALF))
+					return false;
+		for (int x1 = up(r, 1); x1 <= half(r, w); x1 = up(r, x1 + 1))
+			for (int y1 = up(r, 1); y1 < h; y1 = up(r, y1 + 1))
+				for (int y2 = up(r, y1 + 1); y2 < h; y2 = up(r, y2 + 1))
+					if (!emit(visitor, sub, y2, w, y1, w - x1, w, 0, Rotation.QUARTER,
+							h - y1, w, h - y2, x1, 0, h, Rotation.THREEQUARTER))
+						return false;
+		for (int x1 = up(r, 1); x1 < w; x1 = up(r, x1 + 1))
+			for (int x2 = up(r, x1 + 1); x2 < w; x2 = up(r, x2 + 1))
+				for (int y1 = up(r, 1); y1 <= half(r, h); y1 = up(r, y1 + 1))
+					if (!emit(visitor, sub, h, x2, h - y1, x1, 0, h, Rotation.THREEQUARTER,
+							h, w - x1, y1, w - x2, w, 0, Rotation.QUARTER))
+						return false;
+		return true;
+	}
+
+	// Mirrors ellSubdivisions.
+	private boolean forEachEllSubdivision(SubdivisionVisitor visitor, PackedSubdivision sub, RasterPoints r) {
+		int w = width, h = height, cx = insideCorner.x, cy = insideCorner.y;
+		for (int x1 = up(r, 1); x1 < cx; x1 = up(r, x1 + 1))
+			for (int y1 = up(r, cy + 1); y1 < h; y1 = up(r, y1 + 1)) {
+				if (!emit(visitor, sub, w - x1, y1, cx - x1, cy, x1, 0, Rotation.ID,
+						h, cx, h - y1, x1, 0, h, Rotation.THREEQUARTER))
+					return false;
+				if (!emit(visitor, sub, w, y1, x1, cy, 0, 0, Rotation.ID,
+						cx, h - cy, cx - x1, h - y1, cx, h, Rotation.HALF))
+					return false;
+			}
+		for (int x1 = up(r, 1); x1 < cx; x1 = up(r, x1 + 1))
+			for (int y1 = up(r, 1); y1 < cy; y1 = up(r, y1 + 1)) {
+				if (!emit(visitor, sub, w, h, x1, y1, 0, 0, Rotation.ID,
+						w - x1, h - y1, cx - x1, cy - y1, x1, y1, Rotation.ID))
+					return false;
+				if (!emit(visitor, sub, cy, w, y1, w - x1, w, 0, Rotation.QUARTER,
+						h - y1, cx, h - cy, x1, 0, h, Rotation.THREEQUARTER))
+					return false;
+				if (!emit(visitor, sub, cy, w - x1, y1, w - cx, w, 0, Rotation.QUARTER,
+						h, cx, h - y1, x1, 0, h, Rotation.THREEQUARTER))
+					return false;
+			}
+		for (int x1 = up(r, cx + 1); x1 < w; x1 = up(r, x1 + 1))
+			for (int y1 = up(r, 1); y1 < cy; y1 = up(r, y1 + 1)) {
+				if (!emit(visitor, sub, x1, h, cx, y1, 0, 0, Rotation.ID,
+						w - cx, cy, w - x1, cy - y1, w, cy, Rotation.HALF))
+					return false;
+				if (!emit(visitor, sub, cy, w, y1, w - x1, w, 0, Rotation.QUARTER,
+						x1, h - y1, cx, cy - y1, 0, y1, Rotation.ID))
+					return false;
+			}
+		for (int y1 = up(r, 1); y1 < cy; y1 = up(r, y1 + 1)) {
+			if (!emit(visitor, sub, w, h, cx, y1, 0, 0, Rotation.ID,
+					w - cx, cy - y1, w - cx, cy - y1, cx, y1, Rotation.ID))
+				return false;
+			if (!emit(visitor, sub, cy, w, y1, w - cx, w, 0, Rotation.QUARTER,
+					cx, h - y1, cx, h - y1, 0, y1, Rotation.ID))
+				return false;
+			if (!emit(visitor, sub, w, y1, w, y1, 0, 0, Rotation.ID,
+					w, h - y1, cx, cy - y1, 0, y1, Rotation.ID))
+				return false;
+		}
+		for (int x1 = up(r, 1); x1 < cx; x1 = up(r, x1 + 1)) {
+			if (!emit(visitor, sub, w - x1, cy, w - x1, cy, x1, 0, Rotation.ID,
+					h, cx, h - cy, x1, 0, h, Rotation.THREEQUARTER))
+				return false;
+			if (!emit(visitor, sub, w, h, x1, cy, 0, 0, Rotation.ID,
+					cx - x1, h - cy, cx - x1, h - cy, x1, cy, Rotation.ID))
+				return false;
+			if (!emit(visitor, sub, x1, h, x1, h, 0, 0, Rotation.ID,
+					w - x1, h, cx - x1, cy, x1, 0, Rotation.ID))
+				return false;
+		}
+		for (int x1 = up(r, cx); x1 < w; x1 = up(r, x1 + 1))
+			if (!emit(visitor, sub, x1, h, cx, cy, 0, 0, Rotation.ID,
+					w - x1, cy, w - x1, cy, x1, 0, Rotation.ID))
+				return false;
+		for (int y1 = up(r, cy); y1 < h; y1 = up(r, y1 + 1))
+			if (!emit(visitor, sub, w, y1, cx, cy, 0, 0, Rotation.ID,
+					cx, h - y1, cx, h - y1, 0, y1, Rotation.ID))
+				return false;
+		return true;
+	}
+
 	public Stream<Coordinate> asPolygon() {
 		return (isRectangle())
 				? Stream.of(new Coordinate(0, 0), new Coordinate(width, 0), new Coordinate(width, height),
@@ -0,0 +1,99 @@
+package geometry;
+
+/* A PackedSubdivision holds a subdivision as plain ints: for each part, the
+   normalised L-shape (see EllShape.normalisedKey) and its position,
+   with its rotation. It is the allocation-free counterpart of Subdivision,
+   filled in place by EllShape.forEachSubdivision: the same instance is
+   reused for every subdivision of an enumeration, so it must not be kept
+   by a SubdivisionVisitor (which may keep a copy).
+
+   The index is the rank of the subdivision in its enumeration: the same as
+   in the stream EllShape.subdivisions() for forEachSubdivision(visitor),
+   but the rank among the cuts at raster points only when the enumeration
+   is restricted to them (see forEachSubdivision(visitor, raster)).
+ */
+
+public class PackedSubdivision {
+
+	public int index;
+
+	public int width1, height1, cornerX1, cornerY1;
+	public int positionX1, positionY1;
+	public Rotation rotation1;
+
+	public int width2, height2, cornerX2, cornerY2;
+	public int positionX2, positionY2;
+	public Rotation rotation2;
+
+	// The normalised lengths of the last part set, as width, height, cornerX
+	// and cornerY.
+	private final int[] normalised = new int[4];
+
+	void setPart1(int width, int height, int cornerX, int cornerY, int positionX, int positionY, Rotation rotation) {
+		normalise(width, height, cornerX, cornerY);
+		width1 = normalised[0];
+		height1 = normalised[1];
+		cornerX1 = normalised[2];
+		cornerY1 = normalised[3];
+		positionX1 = positionX;
+		positionY1 = positionY;
+		rotation1 = rotation;
+	}
+
+	void setPart2(int width, int height, int cornerX, int cornerY, int positionX, int positionY, Rotation rotation) {
+		normalise(width, height, cornerX, cornerY);
+		width2 = normalised[0];
+		height2 = normalised[1];
+		cornerX2 = normalised[2];
+		cornerY2 = normalised[3];
+		positionX2 = positionX;
+		positionY2 = positionY;
+		rotation2 = rotation;
+	}
+
+	// The lengths too large for a key are normalised by the constructor of
+	// EllShape instead.
+	private void normalise(int width, int height, int cornerX, int cornerY) {
+		if (width > EllShape.MAX_KEY_LENGTH || height > EllShape.MAX_KEY_LENGTH) {
+			EllShape shape = new EllShape(width, height, cornerX, cornerY);
+			normalised[0] = shape.width;
+			normalised[1] = shape.height;
+			normalised[2] = shape.insideCorner.x;
+			normalised[3] = shape.insideCorner.y;
+		} else {
+			long key = EllShape.normalisedKey(width, height, cornerX, cornerY);
+			normalised[0] = EllShape.keyWidth(key);
+			normalised[1] = EllShape.keyHeight(key);
+			normalised[2] = EllShape.keyCornerX(key);
+			normalised[3] = EllShape.keyCornerY(key);
+		}
+	}
+
+	public PackedSubdivision copy() {
+		PackedSubdivision copy = new PackedSubdivision();
+		copy.index = index;
+		copy.setPart1(width1, height1, cornerX1, cornerY1, positionX1, positionY1, rotation1);
+		copy.setPart2(width2, height2, cornerX2, cornerY2, positionX2, positionY2, rotation2);
+		return copy;
+	}
+
+	public EllShape shape1() {
+		return new EllShape(width1, height1, cornerX1, cornerY1);
+	}
+
+	public EllShape shape2() {
+		return new EllShape(width2, height2, cornerX2, cornerY2);
+	}
+
+	public Part part1() {
+		return new Part(shape1(), Coordinate.of(positionX1, positionY1), rotation1);
+	}
+
+	public Part part2() {
+		return new Part(shape2(), Coordinate.of(positionX2, positionY2), rotation2);
+	}
+
+	public Subdivision toSubdivision() {
+		return new Subdivision(part1(), part2());
+	}
+}
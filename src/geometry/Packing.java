@@ -6,54 +6,211 @@ package geometry;
    method transform. This is useful when given the optimal packing for
    the L-shape corresponding to some Part, one wants to get the optimal
    packing for that Part. The method concat is used to merge two disjoint
-   Packing.
+   Packing, and transpose to exchange the roles of the axes.
+
+   The tiles of a flat packing are stored in four int columns (x, y, width
+   and height): a tile costs 16 bytes, and no object. addTile copies the
+   tile given, and the iterator builds a fresh Tile for each tile (Tile is
+   mutable, and the callers may keep the tiles they get). forEachTile hands
+   out the four ints of each tile to a TileVisitor, without building any
+   object.
+
+   The results of transform, transpose and concat do not copy any tile:
+   they are composed packings, which refer to the packings they are built
+   from. Hence the optimal packings of the dynamic programming share their
+   sub-packings, and building the packing of the ground is linear in the
+   number of nodes. The tiles of a composed packing are only computed when
+   it is iterated: it is then flattened into fresh columns, each flat
+   packing it refers to being placed in one loop over its columns (see
+   Placement.apply). A packing must not be modified by addTile once another
+   packing has been built from it; adding a tile to a composed packing
+   first flattens it.
+
+   A lazy packing only knows its size: its tiles are those of the packing
+   given by its source, which is asked for each time it is iterated. It
+   lets a memo keep its packings out of the heap (see
+   dynamicProg.SpillingMemoTable): the packings built from a lazy one do
+   not retain the packing it stands for.
  */
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
 
 
 public class Packing implements Iterable<Tile> {
 
-	List<Tile> listTiles;
-	
+	// The tiles of a flat packing, the first size entries of each column;
+	// xs is null for a composed one.
+	private int[] xs;
+	private int[] ys;
+	private int[] widths;
+	private int[] heights;
+	// A composed packing is either source moved by placement,
+	private Packing source;
+	private Placement placement;
+	// or the union of first and second,
+	private Packing first;
+	private Packing second;
+	// or the packing given by lazy.
+	private Supplier<Packing> lazy;
+	private int size;
+
 	public Packing() {
-		this.listTiles = new ArrayList<Tile>();
+		this(8);
+	}
+
+	// An empty packing with room for capacity tiles.
+	public Packing(int capacity) {
+		xs = new int[capacity];
+		ys = new int[capacity];
+		widths = new int[capacity];
+		heights = new int[capacity];
 	}
-	
+
+	private Packing(Packing source, Placement placement) {
+		this.source = source;
+		this.placement = placement;
+		this.size = source.size();
+	}
+
+	private Packing(Packing first, Packing second) {
+		this.first = first;
+		this.second = second;
+		this.size = first.size() + second.size();
+	}
+
+	private Packing(int size, Supplier<Packing> lazy) {
+		this.lazy = lazy;
+		this.size = size;
+	}
+
+	public static Packing lazy(int size, Supplier<Packing> source) {
+		return new Packing(size, source);
+	}
+
+	public boolean isComposed() {
+		return xs == null;
+	}
+
 	public int size() {
-		return listTiles.size();
+		return size;
 	}
-	
+
 	public void addTile(Tile t) {
-		listTiles.add(t);
+		addTile(t.getWidth(), t.getHeight(), t.getCornerX(), t.getCornerY());
 	}
-	
-	public Packing transform(Part part) {
-		Packing result = new Packing();
-		for (Tile tile : this.listTiles) {
-			Tile copy = tile.clone();
-			copy.rotateBy(part.rotation);
-			copy.translateBy(part.position);
-			result.addTile(copy);
+
+	// Same as addTile(new Tile(width, height, x, y)).
+	public void addTile(int width, int height, int x, int y) {
+		assert (width > 0 && height > 0);
+		if (xs == null) {
+			Packing flat = flatten();
+			xs = flat.xs;
+			ys = flat.ys;
+			widths = flat.widths;
+			heights = flat.heights;
+			source = first = second = null;
+			placement = null;
+			lazy = null;
+		}
+		if (size == xs.length) {
+			int capacity = Math.max(8, 2 * size);
+			xs = Arrays.copyOf(xs, capacity);
+			ys = Arrays.copyOf(ys, capacity);
+			widths = Arrays.copyOf(widths, capacity);
+			heights = Arrays.copyOf(heights, capacity);
 		}
-		return result;		
+		xs[size] = x;
+		ys[size] = y;
+		widths[size] = width;
+		heights[size] = height;
+		size++;
 	}
-	
+
+	// Chains of transforms are merged into a single placement.
+	private Packing place(Placement outer) {
+		if (xs == null && source != null)
+			return new Packing(source, outer.after(placement));
+		return new Packing(this, outer);
+	}
+
+	public Packing transform(Part part) {
+		return place(Placement.of(part));
+	}
+
+	// Reflection along the diagonal x == y: the packing of an L-shape becomes
+	// a packing of the same L-shape with width and height exchanged.
+	public Packing transpose() {
+		return place(Placement.transposition());
+	}
+
 	public static Packing concat(Packing pack1, Packing pack2) {
-		Packing result = new Packing();
-		for (Tile tile : pack1) {
-			result.addTile(tile);
-		};
-		for (Tile tile : pack2) {
-			result.addTile(tile);
-		};
-		return result;		
+		return new Packing(pack1, pack2);
 	}
-	
+
+	// The flat packing with the tiles of this one, in the order of
+	// iteration. The nodes are visited with an explicit stack, since the
+	// depth of a composed packing grows with the size of the ground.
+	private Packing flatten() {
+		if (xs != null)
+			return this;
+		Packing result = new Packing(size);
+		ArrayDeque<Packing> nodes = new ArrayDeque<Packing>();
+		ArrayDeque<Placement> placements = new ArrayDeque<Placement>();
+		nodes.push(this);
+		placements.push(Placement.IDENTITY);
+		while (!nodes.isEmpty()) {
+			Packing node = nodes.pop();
+			Placement outer = placements.pop();
+			if (node.xs != null) {
+				outer.apply(node.xs, node.ys, node.widths, node.heights, node.size,
+						result.xs, result.ys, result.widths, result.heights, result.size);
+				result.size += node.size;
+			} else if (node.source != null) {
+				nodes.push(node.source);
+				placements.push(outer.after(node.placement));
+			} else if (node.lazy != null) {
+				nodes.push(node.lazy.get());
+				placements.push(outer);
+			} else {
+				nodes.push(node.second);
+				placements.push(outer);
+				nodes.push(node.first);
+				placements.push(outer);
+			}
+		}
+		return result;
+	}
+
+	// Visits the tiles in the order of iteration. A composed packing is
+	// flattened first, into columns dropped afterwards.
+	public void forEachTile(TileVisitor visitor) {
+		Packing flat = flatten();
+		for (int i = 0; i < flat.size; i++)
+			visitor.visit(flat.xs[i], flat.ys[i], flat.widths[i], flat.heights[i]);
+	}
+
 	public Iterator<Tile> iterator() {
-		return listTiles.iterator();
+		Packing flat = flatten();
+		return new Iterator<Tile>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < flat.size;
+			}
+
+			@Override
+			public Tile next() {
+				if (next >= flat.size)
+					throw new NoSuchElementException();
+				int i = next++;
+				return new Tile(flat.widths[i], flat.heights[i], flat.xs[i], flat.ys[i]);
+			}
+		};
 	}
-	
+
 }
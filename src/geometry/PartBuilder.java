@@ -9,9 +9,12 @@ package geometry;
 
 public class PartBuilder {
 
-  private EllShape ellShape = new EllShape(0, 0, new Coordinate(0, 0));
+  // The shape is only built by withPosition: without withCorner, it is
+  // empty.
   private int width = 0;
   private int height = 0;
+  private int cornerX = 0;
+  private int cornerY = 0;
 
   private PartBuilder() {}
 
@@ -27,12 +30,13 @@ public class PartBuilder {
   }
 
   public PartBuilder withCorner(int cornerX, int cornerY) {
-    ellShape = new EllShape(width, height, new Coordinate(cornerX,cornerY));
+    this.cornerX = cornerX;
+    this.cornerY = cornerY;
     return this;
   }
 
   public Part withPosition(int positionX, int positionY, Rotation rotation) {
-    return new Part(ellShape, new Coordinate(positionX,positionY), rotation);
+    return new Part(new EllShape(width, height, cornerX, cornerY), Coordinate.of(positionX, positionY), rotation);
   }
 
 }
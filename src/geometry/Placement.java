@@ -0,0 +1,115 @@
+package geometry;
+
+/* A Placement is the rigid motion applied to the tiles of a composed
+   Packing: an optional transposition (reflection along x == y), then a
+   rotation, then a translation. Placements are composed along a chain of
+   transforms, so that a tile deep into a composed Packing is placed once,
+   when the Packing is flattened.
+ */
+
+final class Placement {
+
+	static final Placement IDENTITY = new Placement(false, Rotation.ID, 0, 0);
+
+	final boolean transposed;
+	final Rotation rotation;
+	final int translationX;
+	final int translationY;
+
+	Placement(boolean transposed, Rotation rotation, int translationX, int translationY) {
+		this.transposed = transposed;
+		this.rotation = rotation;
+		this.translationX = translationX;
+		this.translationY = translationY;
+	}
+
+	static Placement of(Part part) {
+		return new Placement(false, part.rotation, part.position.x, part.position.y);
+	}
+
+	static Placement transposition() {
+		return new Placement(true, Rotation.ID, 0, 0);
+	}
+
+	// The placement applying inner first, then this. A transposition turns
+	// a rotation into its inverse: T.R == R^-1.T
+	Placement after(Placement inner) {
+		Rotation innerRotation = transposed ? inner.rotation.negate() : inner.rotation;
+		int shiftX = transposed ? inner.translationY : inner.translationX;
+		int shiftY = transposed ? inner.translationX : inner.translationY;
+		return new Placement(transposed != inner.transposed, rotation.compose(innerRotation),
+				rotatedX(shiftX, shiftY, rotation) + translationX, rotatedY(shiftX, shiftY, rotation) + translationY);
+	}
+
+	// The point (x, y) rotated by r, as in Coordinate.rotateBy.
+	private static int rotatedX(int x, int y, Rotation r) {
+		switch (r) {
+		case QUARTER:
+			return -y;
+		case HALF:
+			return -x;
+		case THREEQUARTER:
+			return y;
+		default:
+			return x;
+		}
+	}
+
+	private static int rotatedY(int x, int y, Rotation r) {
+		switch (r) {
+		case QUARTER:
+			return x;
+		case HALF:
+			return -y;
+		case THREEQUARTER:
+			return -x;
+		default:
+			return y;
+		}
+	}
+
+	// Places the first count tiles of the columns (x, y, width, height) into
+	// the columns dest* from offset. The transposition only exchanges the
+	// columns read, and the rotation is chosen once: each case is a plain
+	// loop over the columns, which the JIT compiler may vectorise (see
+	// Tile.rotateBy for the corner of a rotated tile).
+	void apply(int[] x, int[] y, int[] width, int[] height, int count,
+			int[] destX, int[] destY, int[] destWidth, int[] destHeight, int offset) {
+		if (transposed) {
+			int[] swap = x;
+			x = y;
+			y = swap;
+			swap = width;
+			width = height;
+			height = swap;
+		}
+		switch (rotation) {
+		case QUARTER:
+			for (int i = 0; i < count; i++) {
+				destX[offset + i] = translationX - y[i] - height[i];
+				destY[offset + i] = translationY + x[i];
+			}
+			break;
+		case HALF:
+			for (int i = 0; i < count; i++) {
+				destX[offset + i] = translationX - x[i] - width[i];
+				destY[offset + i] = translationY - y[i] - height[i];
+			}
+			break;
+		case THREEQUARTER:
+			for (int i = 0; i < count; i++) {
+				destX[offset + i] = translationX + y[i];
+				destY[offset + i] = translationY - x[i] - width[i];
+			}
+			break;
+		default:
+			for (int i = 0; i < count; i++) {
+				destX[offset + i] = translationX + x[i];
+				destY[offset + i] = translationY + y[i];
+			}
+		}
+		boolean turned = rotation == Rotation.QUARTER || rotation == Rotation.THREEQUARTER;
+		System.arraycopy(turned ? height : width, 0, destWidth, offset, count);
+		System.arraycopy(turned ? width : height, 0, destHeight, offset, count);
+	}
+}
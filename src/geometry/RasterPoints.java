@@ -0,0 +1,69 @@
+package geometry;
+
+/* The raster points of a tile are the lengths which are a sum of sides of
+   the tile, that is the non-negative integer combinations of its width and
+   height. Any packing of an L-shape can be pushed down and left until every
+   tile touches either the border or another tile: then every side of every
+   tile lies at a raster point. Hence a length can always be rounded down to
+   the largest raster point below it without losing any tile.
+
+   The raster points of a tile are computed once, up to the largest length
+   asked so far, and shared by all the users of the same tile (in either
+   orientation).
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+
+public class RasterPoints {
+
+	private static final ConcurrentHashMap<Long, RasterPoints> cache = new ConcurrentHashMap<Long, RasterPoints>();
+
+	private final int side1;
+	private final int side2;
+	// floor[n] is the largest raster point not greater than n.
+	private volatile int[] floor;
+
+	private RasterPoints(int side1, int side2) {
+		this.side1 = side1;
+		this.side2 = side2;
+		this.floor = compute(64);
+	}
+
+	public static RasterPoints of(Tile basicTile) {
+		int side1 = Math.min(basicTile.getWidth(), basicTile.getHeight());
+		int side2 = Math.max(basicTile.getWidth(), basicTile.getHeight());
+		return cache.computeIfAbsent(((long) side1 << 32) | side2, key -> new RasterPoints(side1, side2));
+	}
+
+	private int[] compute(int limit) {
+		boolean[] isPoint = new boolean[limit + 1];
+		int[] result = new int[limit + 1];
+		isPoint[0] = true;
+		for (int n = 1; n <= limit; n++) {
+			isPoint[n] = (n >= side1 && isPoint[n - side1]) || (n >= side2 && isPoint[n - side2]);
+			result[n] = isPoint[n] ? n : result[n - 1];
+		}
+		return result;
+	}
+
+	public int floor(int length) {
+		int[] table = floor;
+		if (length >= table.length) {
+			table = compute(Math.max(length, 2 * table.length));
+			floor = table;
+		}
+		return table[length];
+	}
+
+	public boolean contains(int length) {
+		return floor(length) == length;
+	}
+
+	// The smallest raster point not smaller than length. The multiples of the
+	// shorter side are raster points, so there are less than side1 steps.
+	public int ceiling(int length) {
+		while (!contains(length))
+			length++;
+		return length;
+	}
+}
@@ -11,6 +11,8 @@ public enum Rotation {
   HALF,
   THREEQUARTER;
 
+  private static final Rotation[] VALUES = values();
+
   public Rotation negate() {
     switch (this) {
       case ID:
@@ -24,4 +26,9 @@ public enum Rotation {
     }
     return null;
   }
+
+  // The rotation by this followed by r (rotations commute).
+  public Rotation compose(Rotation r) {
+    return VALUES[(ordinal() + r.ordinal()) % 4];
+  }
 }
@@ -0,0 +1,10 @@
+package geometry;
+
+/* Callback of EllShape.forEachSubdivision. The visitor returns false to stop
+   the enumeration. */
+
+public interface SubdivisionVisitor {
+
+	boolean visit(PackedSubdivision subdivision);
+
+}
@@ -3,11 +3,13 @@ package geometry;
 /* A Tile is a small rectangular shape positioned into the plane,
    with axis-parallel sides and integral coordinates. A tile may be moved
    and rotated (as long as it stays axis-parallel and integral).
+   Its corner is kept as two ints, so that moving a tile allocates nothing.
  */
 
 public class Tile {
 
-	private Coordinate corner;
+	private int x;
+	private int y;
 	private int width;
 	private int height;
 
@@ -15,29 +17,30 @@ public class Tile {
 		assert (width > 0 && height > 0);
 		this.width = width;
 		this.height = height;
-		corner = new Coordinate(0, 0);
 	}
 	
 	public Tile(int width, int height, Coordinate corner) {
 		assert (width > 0 && height > 0);
 		this.width = width;
 		this.height = height;
-		this.corner = corner;
+		this.x = corner.x;
+		this.y = corner.y;
 	}
 	
 	public Tile(int width, int height, int x, int y) {
 		assert (width > 0 && height > 0);
 		this.width = width;
 		this.height = height;
-		this.corner = new Coordinate(x, y);
+		this.x = x;
+		this.y = y;
 	}
 
 	public int getCornerX() {
-		return corner.x;
+		return x;
 	}
 
 	public int getCornerY() {
-		return corner.y;
+		return y;
 	}
 
 	public int getWidth() {
@@ -59,11 +62,12 @@ public class Tile {
 	}
 
 	public void translateBy(Coordinate vec) {
-		corner = corner.translateBy(vec);
+		translateBy(vec.x, vec.y);
 	}
 
 	public void translateBy(int x, int y) {
-		translateBy(new Coordinate(x, y));
+		this.x += x;
+		this.y += y;
 	}
 
 	// It would be incorrect to simply rotate to bottom-left insideCorner
@@ -71,28 +75,29 @@ public class Tile {
 	// transformed into an other insideCorner if the rectangle, so we need
 	// to adjust.
 	public void rotateBy(Rotation r) {
-		corner = corner.rotateBy(r);
+		int oldX = x;
 		switch (r) {
 		case ID:
 			break;
 		case QUARTER:
-			corner = corner.translateBy(new Coordinate(-height, 0));
+			x = -y - height;
+			y = oldX;
 			flip();
 			break;
 		case HALF:
-			corner = corner.translateBy(new Coordinate(-width, -height));
+			x = -x - width;
+			y = -y - height;
 			break;
 		case THREEQUARTER:
-			corner = corner.translateBy(new Coordinate(0, -width));
+			x = y;
+			y = -oldX - width;
 			flip();
 			break;
 		}
 	}
 
 	public Tile clone() {
-		Tile res = new Tile(this.width, this.height);
-		res.translateBy(this.corner);
-		return res;
+		return new Tile(width, height, x, y);
 	}
 
 }
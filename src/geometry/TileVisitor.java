@@ -0,0 +1,11 @@
+package geometry;
+
+/* Callback of Packing.forEachTile: the corner, width and height of each
+   tile, as in the constructor Tile(width, height, x, y) but in the order
+   of the columns of the packing. */
+
+public interface TileVisitor {
+
+	void visit(int x, int y, int width, int height);
+
+}
@@ -0,0 +1,164 @@
+package service;
+
+/* SolverServer exposes a SolverService over HTTP (com.sun.net.httpserver):
+
+     GET /solve?width=31&height=27&tileWidth=2&tileHeight=7
+         [&timeLimit=milliseconds][&tiles=true]
+       one JSON record, as written by batch.ResultWriter,
+     GET /stats
+       the counters of the service, as JSON.
+
+   Each request is handled on a virtual thread when the JVM has them
+   (Java 21 and later), on a thread of a cached pool otherwise: a request
+   mostly waits for its solve (see SolverService). */
+
+import batch.Instance;
+import batch.InstanceResult;
+import batch.ResultWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dynamicProg.AnytimeResult;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class SolverServer implements AutoCloseable {
+	private final SolverService service;
+	private final HttpServer server;
+	private final ExecutorService handlers;
+
+	public SolverServer(SolverService service, InetSocketAddress address) throws IOException {
+		this.service = service;
+		this.server = HttpServer.create(address, 0);
+		this.handlers = requestExecutor();
+		server.setExecutor(handlers);
+		server.createContext("/solve", this::solve);
+		server.createContext("/stats", this::stats);
+	}
+
+	static ExecutorService requestExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException exc) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public int port() {
+		return server.getAddress().getPort();
+	}
+
+	private static Map<String, String> query(HttpExchange exchange) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query == null)
+			return parameters;
+		for (String pair : query.split("&")) {
+			int equal = pair.indexOf('=');
+			String name = (equal < 0) ? pair : pair.substring(0, equal);
+			String value = (equal < 0) ? "" : pair.substring(equal + 1);
+			parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return parameters;
+	}
+
+	private static int intParameter(Map<String, String> parameters, String name) {
+		String value = parameters.get(name);
+		if (value == null)
+			throw new IllegalArgumentException("missing parameter " + name);
+		return Integer.parseInt(value);
+	}
+
+	// The body of an error reply, message being escaped as a JSON string.
+	private static String error(String message) {
+		StringBuilder body = new StringBuilder("{\"error\":\"");
+		for (int i = 0; i < message.length(); i++) {
+			char c = message.charAt(i);
+			if (c == '"' || c == '\\')
+				body.append('\\').append(c);
+			else if (c == '\n')
+				body.append("\\n");
+			else if (c < 0x20)
+				body.append(String.format("\\u%04x", (int) c));
+			else
+				body.append(c);
+		}
+		return body.append("\"}\n").toString();
+	}
+
+	private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private void solve(HttpExchange exchange) throws IOException {
+		try {
+			if (!exchange.getRequestMethod().equals("GET")) {
+				reply(exchange, 405, error("GET expected"));
+				return;
+			}
+			Instance instance;
+			Duration timeLimit;
+			boolean withTiles;
+			try {
+				Map<String, String> parameters = query(exchange);
+				instance = new Instance(0, intParameter(parameters, "width"), intParameter(parameters, "height"),
+						intParameter(parameters, "tileWidth"), intParameter(parameters, "tileHeight"));
+				service.check(instance);
+				timeLimit = parameters.containsKey("timeLimit")
+						? Duration.ofMillis(Long.parseLong(parameters.get("timeLimit"))) : null;
+				withTiles = Boolean.parseBoolean(parameters.get("tiles"));
+			} catch (IllegalArgumentException exc) {
+				reply(exchange, 400, error(String.valueOf(exc.getMessage())));
+				return;
+			}
+			long start = System.nanoTime();
+			AnytimeResult result = service.solve(instance, timeLimit);
+			StringWriter body = new StringWriter();
+			try (ResultWriter writer = ResultWriter.of("json", body, withTiles)) {
+				writer.write(new InstanceResult(instance, result, System.nanoTime() - start));
+			}
+			reply(exchange, 200, body.toString());
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			reply(exchange, 503, error("interrupted"));
+		} catch (RuntimeException exc) {
+			reply(exchange, 500, error(exc.toString()));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void stats(HttpExchange exchange) throws IOException {
+		try {
+			reply(exchange, 200, "{\"requests\":" + service.requests() + ",\"merged\":" + service.mergedRequests()
+					+ ",\"warmTables\":" + service.warmTables() + ",\"tables\":" + service.tables()
+					+ ",\"evictedTables\":" + service.evictedTables() + "}\n");
+		} finally {
+			exchange.close();
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		handlers.shutdownNow();
+		service.close();
+	}
+}
@@ -0,0 +1,241 @@
+package service;
+
+/* A SolverService answers solve requests for a long time, keeping warm the
+   MemoTable of the tiles it used recently:
+
+   - the tables are kept in a LRU map of at most capacity tiles (a tile and
+     its rotation share the same table),
+   - each table holds at most about tableBudget bytes of packings on the
+     heap, the others being spilled to a file of spillDirectory or computed
+     again (see SpillingMemoTable). The file of an evicted table is closed
+     once the solves using it are done,
+   - a MemoTable is not thread-safe: the requests using the same table are
+     solved one at a time, under the lock of the table. The requests for
+     other tiles go on meanwhile,
+   - identical requests arriving while one of them is being solved do not
+     solve it again: they wait for the result of the first one.
+
+   The solves run on a pool of platform threads with a large stack (the
+   solvers recurse once per nested L-shape): the callers, which may be
+   virtual threads, only wait for the result. */
+
+import batch.Instance;
+import dynamicProg.AnytimeResult;
+import dynamicProg.BoundedDynamicProgrammingSolver;
+import dynamicProg.SpillingMemoTable;
+import geometry.EllShape;
+import geometry.Packing;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class SolverService implements AutoCloseable {
+	private static final long SOLVER_STACK_SIZE = 512L << 20;
+
+	private final int capacity;
+	private final long tableBudget;
+	private final Path spillDirectory;
+	private final ExecutorService solvers;
+	private final LinkedHashMap<Long, TileTable> tables;
+	private final ConcurrentHashMap<String, CompletableFuture<AnytimeResult>> inFlight =
+			new ConcurrentHashMap<String, CompletableFuture<AnytimeResult>>();
+
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder merged = new LongAdder();
+	private final LongAdder warm = new LongAdder();
+	private final LongAdder evicted = new LongAdder();
+
+	private static class TileTable {
+		final SpillingMemoTable table;
+		final ReentrantLock lock = new ReentrantLock();
+		// Set when the table is evicted; closed is guarded by lock.
+		volatile boolean evicted = false;
+		boolean closed = false;
+
+		TileTable(SpillingMemoTable table) {
+			this.table = table;
+		}
+
+		// Closes the table unless a solve is using it: the solve closes it
+		// when it is done (see closeIfIdle).
+		void retire() {
+			evicted = true;
+			closeIfIdle();
+		}
+
+		void closeIfIdle() {
+			if (!evicted || !lock.tryLock())
+				return;
+			try {
+				if (!closed)
+					table.close();
+			} catch (IOException exc) {
+				// The spill file is deleted on close: there is nothing to recover.
+			} finally {
+				closed = true;
+				lock.unlock();
+			}
+		}
+	}
+
+	// Each table gets half of an equal share of the heap, and spills into
+	// the temporary directory.
+	public SolverService(int capacity, int threads) {
+		this(capacity, threads, Runtime.getRuntime().maxMemory() / Math.max(1, capacity) / 2,
+				Paths.get(System.getProperty("java.io.tmpdir")));
+	}
+
+	public SolverService(int capacity, int threads, long tableBudget, Path spillDirectory) {
+		if (capacity <= 0 || threads <= 0)
+			throw new IllegalArgumentException("capacity and threads must be positive");
+		this.capacity = capacity;
+		this.tableBudget = tableBudget;
+		this.spillDirectory = spillDirectory;
+		AtomicInteger count = new AtomicInteger();
+		this.solvers = Executors.newFixedThreadPool(threads,
+				task -> new Thread(null, task, "solver-" + count.incrementAndGet(), SOLVER_STACK_SIZE));
+		this.tables = new LinkedHashMap<Long, TileTable>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, TileTable> eldest) {
+				if (size() <= SolverService.this.capacity)
+					return false;
+				evicted.increment();
+				eldest.getValue().retire();
+				return true;
+			}
+		};
+	}
+
+	private TileTable tableFor(Instance instance) {
+		int shortSide = Math.min(instance.tileWidth, instance.tileHeight);
+		int longSide = Math.max(instance.tileWidth, instance.tileHeight);
+		synchronized (tables) {
+			TileTable table = tables.get(((long) shortSide << 32) | longSide);
+			if (table != null) {
+				warm.increment();
+				return table;
+			}
+			try {
+				table = new TileTable(new SpillingMemoTable(instance.tile(), tableBudget, spillDirectory));
+			} catch (IOException exc) {
+				throw new UncheckedIOException(exc);
+			}
+			tables.put(((long) shortSide << 32) | longSide, table);
+			return table;
+		}
+	}
+
+	// The tables know the shapes by their keys (see SpillingMemoTable): the
+	// grounds whose sides do not fit into a key are refused.
+	public void check(Instance instance) {
+		if (Math.max(instance.width, instance.height) > EllShape.MAX_KEY_LENGTH)
+			throw new IllegalArgumentException("ground too large: " + instance.width + "x" + instance.height
+					+ " (at most " + EllShape.MAX_KEY_LENGTH + " on a side)");
+	}
+
+	// Solves instance, within timeLimit if not null (see
+	// DynamicProgrammingSolver.solve(Instant, Cancellation, Consumer)).
+	public AnytimeResult solve(Instance instance, Duration timeLimit) throws InterruptedException {
+		check(instance);
+		requests.increment();
+		// The deadline runs from the request: the time spent waiting for a
+		// solver thread, or for the table, counts.
+		Instant deadline = (timeLimit != null) ? Instant.now().plus(timeLimit) : null;
+		String key = instance + " " + timeLimit;
+		CompletableFuture<AnytimeResult> future = new CompletableFuture<AnytimeResult>();
+		CompletableFuture<AnytimeResult> running = inFlight.putIfAbsent(key, future);
+		if (running != null) {
+			merged.increment();
+			future = running;
+		} else {
+			CompletableFuture<AnytimeResult> result = future;
+			try {
+				solvers.execute(() -> {
+					try {
+						result.complete(solveNow(instance, deadline));
+					} catch (Throwable exc) {
+						result.completeExceptionally(exc);
+					} finally {
+						inFlight.remove(key, result);
+					}
+				});
+			} catch (RejectedExecutionException exc) {
+				// The requests merged meanwhile must not wait for it.
+				inFlight.remove(key, result);
+				result.completeExceptionally(exc);
+				throw exc;
+			}
+		}
+		try {
+			return future.get();
+		} catch (ExecutionException exc) {
+			if (exc.getCause() instanceof RuntimeException)
+				throw (RuntimeException) exc.getCause();
+			throw new IllegalStateException(exc.getCause());
+		}
+	}
+
+	// A table evicted and closed while waiting for its lock is replaced by
+	// a new one. The packing found refers to the table (see
+	// SpillingMemoTable): it is copied, under the lock, into a flat packing
+	// the callers may iterate once the table is closed, and from several
+	// threads.
+	private AnytimeResult solveNow(Instance instance, Instant deadline) {
+		for (;;) {
+			TileTable table = tableFor(instance);
+			table.lock.lock();
+			try {
+				if (!table.closed) {
+					AnytimeResult result = new BoundedDynamicProgrammingSolver(instance.ground(), instance.tile(),
+							table.table).solve(deadline, null, null);
+					Packing packing = new Packing(result.packing.size());
+					result.packing.forEachTile((x, y, width, height) -> packing.addTile(width, height, x, y));
+					return new AnytimeResult(packing, result.upperBound, result.isComplete);
+				}
+			} finally {
+				table.lock.unlock();
+				table.closeIfIdle();
+			}
+		}
+	}
+
+	public long requests() { return requests.sum(); }
+
+	public long mergedRequests() { return merged.sum(); }
+
+	public long warmTables() { return warm.sum(); }
+
+	public long evictedTables() { return evicted.sum(); }
+
+	public int tables() {
+		synchronized (tables) {
+			return tables.size();
+		}
+	}
+
+	@Override
+	public void close() {
+		solvers.shutdownNow();
+		synchronized (tables) {
+			for (TileTable table : tables.values())
+				table.retire();
+			tables.clear();
+		}
+	}
+}